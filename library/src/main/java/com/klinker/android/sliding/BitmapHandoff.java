@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hands a bitmap that has already been decoded in the launching activity over to a
+ * {@link SlidingActivity}, without copying it through the intent. The bitmap is registered
+ * under a token and only the token goes into the intent.
+ *
+ * Bitmaps are held until they are taken, or until they expire after a short time, so nothing is
+ * kept alive for long if the sliding activity is never opened. If the process was restarted in
+ * between, the token won't be found and the activity just loads its header as it normally would.
+ *
+ * Usage, in the launching activity:
+ *
+ * BitmapHandoff.putHeaderBitmap(intent, avatarBitmap);
+ * startActivity(intent);
+ */
+public class BitmapHandoff {
+
+    /**
+     * Intent extra holding the token of the header bitmap.
+     */
+    public static final String EXTRA_HEADER_BITMAP = "com.klinker.android.sliding.HEADER_BITMAP";
+
+    /**
+     * Intent extra holding the token of the snapshot of the view that is being expanded from.
+     */
+    public static final String EXTRA_SOURCE_SNAPSHOT = "com.klinker.android.sliding.SOURCE_SNAPSHOT";
+
+    /**
+     * The default scale of source view snapshots. They are only shown while the view expands
+     * and fades out, so they don't need to be full resolution.
+     */
+    public static final float DEFAULT_SNAPSHOT_SCALE = 0.5f;
+
+    /**
+     * How long a bitmap stays registered if nobody takes it.
+     */
+    public static final long DEFAULT_TTL_MS = 10 * 1000;
+
+    private static final Map<String, Handoff> handoffs = new HashMap<String, Handoff>();
+    private static final Handler expiryHandler = new Handler(Looper.getMainLooper());
+
+    // don't allow for instantiation
+    private BitmapHandoff() {
+
+    }
+
+    /**
+     * Register a bitmap to be used as the header of the sliding activity started with this
+     * intent.
+     * @param intent the intent that will start the sliding activity.
+     * @param bitmap the bitmap to display in the header.
+     */
+    public static void putHeaderBitmap(Intent intent, Bitmap bitmap) {
+        intent.putExtra(EXTRA_HEADER_BITMAP, register(bitmap, DEFAULT_TTL_MS));
+    }
+
+    /**
+     * Take a downscaled snapshot of the view that the sliding activity will expand from, see
+     * {@link SlidingActivity#expandFromPoints(int, int, int, int)}. The snapshot is drawn over
+     * the expanding activity from its very first frame and cross faded as the expansion runs.
+     * @param intent the intent that will start the sliding activity.
+     * @param source the view being expanded from.
+     */
+    public static void putSourceSnapshot(Intent intent, View source) {
+        putSourceSnapshot(intent, source, DEFAULT_SNAPSHOT_SCALE);
+    }
+
+    /**
+     * Take a downscaled snapshot of the view that the sliding activity will expand from.
+     * @param intent the intent that will start the sliding activity.
+     * @param source the view being expanded from.
+     * @param scale how much to scale the snapshot by, between 0 and 1.
+     */
+    public static void putSourceSnapshot(Intent intent, View source, float scale) {
+        if (source.getWidth() == 0 || source.getHeight() == 0) {
+            return;
+        }
+
+        final Bitmap bitmap = Bitmap.createBitmap(
+                Math.max(1, (int) (source.getWidth() * scale)),
+                Math.max(1, (int) (source.getHeight() * scale)),
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.scale(scale, scale);
+        source.draw(canvas);
+
+        intent.putExtra(EXTRA_SOURCE_SNAPSHOT, register(bitmap, DEFAULT_TTL_MS));
+    }
+
+    /**
+     * Register a bitmap so that it can be taken somewhere else in the process.
+     * @param bitmap the bitmap.
+     * @param ttlMs how long the bitmap should stay registered, in milliseconds.
+     * @return the token to take the bitmap with.
+     */
+    public static String register(Bitmap bitmap, long ttlMs) {
+        final String token = UUID.randomUUID().toString();
+        synchronized (handoffs) {
+            removeExpired();
+            handoffs.put(token, new Handoff(bitmap, SystemClock.uptimeMillis() + ttlMs));
+        }
+
+        // Let go of the bitmap once it expires, even if nothing else is registered after it.
+        expiryHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (handoffs) {
+                    removeExpired();
+                }
+            }
+        }, ttlMs + 1);
+        return token;
+    }
+
+    /**
+     * Take a registered bitmap. Each bitmap can only be taken once.
+     * @param token the token the bitmap was registered with, may be null.
+     * @return the bitmap, or null if it has expired or was never registered.
+     */
+    public static Bitmap take(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        final Handoff handoff;
+        synchronized (handoffs) {
+            handoff = handoffs.remove(token);
+        }
+
+        if (handoff == null || handoff.isExpired()) {
+            return null;
+        }
+
+        final Bitmap bitmap = handoff.bitmap;
+        return bitmap.isRecycled() ? null : bitmap;
+    }
+
+    /**
+     * Take the header bitmap that was registered for this intent.
+     * @param intent the intent that started the sliding activity.
+     * @return the bitmap, or null if there isn't one.
+     */
+    static Bitmap takeHeaderBitmap(Intent intent) {
+        return intent == null ? null : take(intent.getStringExtra(EXTRA_HEADER_BITMAP));
+    }
+
+    /**
+     * Take the source view snapshot that was registered for this intent.
+     * @param intent the intent that started the sliding activity.
+     * @return the snapshot, or null if there isn't one.
+     */
+    static Bitmap takeSourceSnapshot(Intent intent) {
+        return intent == null ? null : take(intent.getStringExtra(EXTRA_SOURCE_SNAPSHOT));
+    }
+
+    private static void removeExpired() {
+        final Iterator<Handoff> iterator = handoffs.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * A registered bitmap and the time it expires at.
+     */
+    private static class Handoff {
+
+        private final Bitmap bitmap;
+        private final long expiresAt;
+
+        private Handoff(Bitmap bitmap, long expiresAt) {
+            this.bitmap = bitmap;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return SystemClock.uptimeMillis() > expiresAt;
+        }
+    }
+
+}
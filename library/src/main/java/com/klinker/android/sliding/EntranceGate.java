@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Holds back the entrance animation until the things it should show are ready, such as the
+ * header image or the colors extracted from it. Each of these takes a {@link Ticket} and marks
+ * it ready once it has loaded. If they don't all become ready before the deadline, the gate
+ * opens anyway and the animation runs with whatever is available.
+ *
+ * All tickets should be taken before the gate starts waiting, ie in the activity's init().
+ */
+public class EntranceGate {
+
+    /**
+     * Interface for listening to the gate opening.
+     */
+    public interface OnOpenListener {
+
+        /**
+         * Called on the main thread once the gate has opened.
+         * @param waitedMs how long the gate was waiting for its tickets.
+         * @param timedOut true if the deadline passed before all of the tickets were ready.
+         */
+        void onOpen(long waitedMs, boolean timedOut);
+
+    }
+
+    /**
+     * Handle for a single thing that the gate is waiting on.
+     */
+    public class Ticket {
+
+        private boolean isReady;
+
+        private Ticket() {
+
+        }
+
+        /**
+         * Mark this ticket as ready. This is safe to call from any thread, and calling it more
+         * than once has no effect.
+         */
+        public void ready() {
+            if (Looper.myLooper() != Looper.getMainLooper()) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ready();
+                    }
+                });
+                return;
+            }
+
+            if (isReady) {
+                return;
+            }
+
+            isReady = true;
+            pendingTickets--;
+            if (pendingTickets == 0 && isWaiting) {
+                open(false);
+            }
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int pendingTickets;
+    private boolean isWaiting;
+    private long waitStartTime;
+    private OnOpenListener listener;
+
+    private final Runnable deadlineRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isWaiting) {
+                open(true);
+            }
+        }
+    };
+
+    /**
+     * Take a ticket that the gate should wait for.
+     * @return the ticket.
+     */
+    public Ticket hold() {
+        pendingTickets++;
+        return new Ticket();
+    }
+
+    /**
+     * Check whether there is nothing left to wait for.
+     * @return true if all of the tickets are ready.
+     */
+    public boolean isReady() {
+        return pendingTickets == 0;
+    }
+
+    /**
+     * Get the number of tickets that the gate is still waiting on.
+     * @return the number of tickets, or 0 if the gate isn't waiting.
+     */
+    int getPendingTicketCount() {
+        return isWaiting ? pendingTickets : 0;
+    }
+
+    /**
+     * Wait for all of the tickets to be ready, or for the deadline to pass. If all of the
+     * tickets are already ready, the listener is called immediately.
+     * @param deadlineMs the longest amount of time to wait, in milliseconds.
+     * @param listener the listener to call once the gate opens.
+     */
+    public void await(long deadlineMs, OnOpenListener listener) {
+        this.listener = listener;
+        waitStartTime = SystemClock.uptimeMillis();
+        isWaiting = true;
+
+        if (pendingTickets == 0) {
+            open(false);
+        } else {
+            handler.postDelayed(deadlineRunnable, deadlineMs);
+        }
+    }
+
+    /**
+     * Stop waiting without calling the listener.
+     */
+    public void cancel() {
+        isWaiting = false;
+        listener = null;
+        handler.removeCallbacks(deadlineRunnable);
+    }
+
+    private void open(boolean timedOut) {
+        isWaiting = false;
+        handler.removeCallbacks(deadlineRunnable);
+
+        final OnOpenListener openListener = listener;
+        listener = null;
+        if (openListener != null) {
+            openListener.onOpen(SystemClock.uptimeMillis() - waitStartTime, timedOut);
+        }
+    }
+
+}
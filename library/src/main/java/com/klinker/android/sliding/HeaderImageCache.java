@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v7.graphics.Palette;
+import android.util.LruCache;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Holds header images that were decoded ahead of time, along with the colors extracted from
+ * them. Images are put in here before the sliding activity is even started, with
+ * {@link SlidingActivity#prewarm(Context, int)}, and handed over to the first setImage() call
+ * for the same resource, which removes them. Images that setImage() decodes itself are not kept
+ * in here, so that nothing holds on to them once the activity that shows them is gone.
+ */
+class HeaderImageCache {
+
+    private static final int DEFAULT_PRIMARY_COLOR = 0xff607D8B;
+    private static final int DEFAULT_PRIMARY_DARK_COLOR = 0xff37474F;
+
+    /**
+     * Only a few prewarmed images that were never opened are kept around.
+     */
+    private static final int MAX_PREWARMED = 3;
+
+    /**
+     * A decoded header image, along with its colors.
+     */
+    static class Entry {
+
+        final Bitmap bitmap;
+        final int primaryColor;
+        final int primaryColorDark;
+
+        Entry(Bitmap bitmap, int primaryColor, int primaryColorDark) {
+            this.bitmap = bitmap;
+            this.primaryColor = primaryColor;
+            this.primaryColorDark = primaryColorDark;
+        }
+    }
+
+    /**
+     * A resource along with the parts of the configuration that decide which version of it gets
+     * decoded, and at which size. An image prewarmed in one configuration can't be used in
+     * another, ie after a switch to night mode or to a display with a different density.
+     */
+    private static class Key {
+
+        private final int resId;
+        private final int densityDpi;
+        private final int uiMode;
+        private final int orientation;
+        private final int screenLayout;
+        private final int smallestScreenWidthDp;
+        private final int screenWidthDp;
+        private final int screenHeightDp;
+        private final Locale locale;
+
+        @SuppressWarnings("deprecation")
+        Key(Resources resources, int resId) {
+            final Configuration configuration = resources.getConfiguration();
+            this.resId = resId;
+            this.densityDpi = resources.getDisplayMetrics().densityDpi;
+            this.uiMode = configuration.uiMode;
+            this.orientation = configuration.orientation;
+            this.screenLayout = configuration.screenLayout;
+            this.smallestScreenWidthDp = configuration.smallestScreenWidthDp;
+            this.screenWidthDp = configuration.screenWidthDp;
+            this.screenHeightDp = configuration.screenHeightDp;
+            this.locale = configuration.locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return resId == key.resId &&
+                    densityDpi == key.densityDpi &&
+                    uiMode == key.uiMode &&
+                    orientation == key.orientation &&
+                    screenLayout == key.screenLayout &&
+                    smallestScreenWidthDp == key.smallestScreenWidthDp &&
+                    screenWidthDp == key.screenWidthDp &&
+                    screenHeightDp == key.screenHeightDp &&
+                    (locale == null ? key.locale == null : locale.equals(key.locale));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + densityDpi;
+            result = 31 * result + uiMode;
+            result = 31 * result + orientation;
+            result = 31 * result + screenLayout;
+            result = 31 * result + smallestScreenWidthDp;
+            result = 31 * result + screenWidthDp;
+            result = 31 * result + screenHeightDp;
+            result = 31 * result + (locale != null ? locale.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static final LruCache<Key, Entry> prewarmed = new LruCache<Key, Entry>(MAX_PREWARMED);
+
+    private static final Set<Key> pending = new HashSet<Key>();
+
+    // don't allow for instantiation
+    private HeaderImageCache() {
+
+    }
+
+    /**
+     * Take the prewarmed image for a resource, if there is one for the current configuration.
+     * It is removed from here, the caller owns it from now on.
+     * @param resources the resources the image will be shown with.
+     * @param resId the drawable resource id.
+     * @return the entry, or null if it wasn't prewarmed.
+     */
+    static Entry take(Resources resources, int resId) {
+        return prewarmed.remove(new Key(resources, resId));
+    }
+
+    /**
+     * Throw the prewarmed images away when memory is getting low. Just being moved to the
+     * background isn't a reason to, the images will most likely be needed again.
+     * @param level the level passed to onTrimMemory().
+     */
+    static void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW &&
+                        level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)) {
+            prewarmed.evictAll();
+        }
+    }
+
+    /**
+     * Decode the image and extract its colors on the background executor, unless it is already
+     * prewarmed or being decoded. Must be called on the main thread.
+     * @param context the context that is launching the sliding activity, its configuration is
+     *                the one the image is decoded for.
+     * @param resId the drawable resource id.
+     */
+    static void prewarm(Context context, final int resId) {
+        final Resources resources = context.getResources();
+        final Key key = new Key(resources, resId);
+        if (prewarmed.get(key) != null || pending.contains(key)) {
+            return;
+        }
+
+        pending.add(key);
+        SlidingExecutors.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Entry entry = decode(resources, resId);
+                SlidingExecutors.getMainExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        pending.remove(key);
+                        if (entry != null) {
+                            prewarmed.put(key, entry);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Decode an image and extract its colors with Palette.
+     * @param resources the resources to decode from.
+     * @param resId the drawable resource id.
+     * @return the entry, or null if the resource could not be decoded.
+     */
+    static Entry decode(Resources resources, int resId) {
+        final Bitmap bitmap = BitmapFactory.decodeResource(resources, resId);
+        if (bitmap == null) {
+            return null;
+        }
+
+        final Palette palette = Palette.from(bitmap).generate();
+        return new Entry(bitmap, palette.getVibrantColor(DEFAULT_PRIMARY_COLOR),
+                palette.getDarkVibrantColor(DEFAULT_PRIMARY_DARK_COLOR));
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Draws everything that sits on top of the header photo in a single pass: the dim overlay, the
+ * tint that fades in as the header collapses and the gradients behind the title and the
+ * toolbar. These used to be separate stacked views, each with their own display list, that
+ * were all updated on every scroll frame.
+ *
+ * {@link MultiShrinkScroller} sets the scroll driven values, which only invalidate when they
+ * actually change. Layers that are fully transparent are skipped while drawing.
+ */
+public class HeaderOverlayView extends View {
+
+    private static final int GRADIENT_COLOR = 0x88000000;
+
+    private final Paint gradientPaint = new Paint();
+    private LinearGradient titleGradient;
+    private LinearGradient actionBarGradient;
+    private int titleGradientHeight;
+    private int actionBarGradientHeight;
+    private int gradientAlpha;
+    private int tintColor = Color.TRANSPARENT;
+    private int dimColor = Color.TRANSPARENT;
+
+    /**
+     * Creates a new instance of HeaderOverlayView.
+     * @param context
+     */
+    public HeaderOverlayView(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Creates a new instance of HeaderOverlayView.
+     * @param context
+     * @param attrs
+     */
+    public HeaderOverlayView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    /**
+     * Creates a new instance of HeaderOverlayView.
+     * @param context
+     * @param attrs
+     * @param defStyleAttr
+     */
+    public HeaderOverlayView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Set the tint color that is drawn over the photo, including its alpha.
+     * @param color the color.
+     */
+    public void setTintColor(int color) {
+        if (tintColor != color) {
+            tintColor = color;
+            invalidate();
+        }
+    }
+
+    /**
+     * Set the alpha of both of the gradients.
+     * @param alpha the alpha, from 0 to 255.
+     */
+    public void setGradientAlpha(int alpha) {
+        if (gradientAlpha != alpha) {
+            gradientAlpha = alpha;
+            invalidate();
+        }
+    }
+
+    /**
+     * Set the heights of the gradients. The shaders are only rebuilt when these change.
+     * @param actionBarHeight the height of the gradient at the top, behind the toolbar.
+     * @param titleHeight the height of the gradient at the bottom, behind the title.
+     */
+    public void setGradientHeights(int actionBarHeight, int titleHeight) {
+        if (actionBarHeight != actionBarGradientHeight) {
+            actionBarGradientHeight = actionBarHeight;
+            actionBarGradient = new LinearGradient(0, 0, 0, actionBarHeight,
+                    GRADIENT_COLOR, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+            invalidate();
+        }
+
+        if (titleHeight != titleGradientHeight) {
+            titleGradientHeight = titleHeight;
+            titleGradient = new LinearGradient(0, 0, 0, titleHeight,
+                    Color.TRANSPARENT, GRADIENT_COLOR, Shader.TileMode.CLAMP);
+            invalidate();
+        }
+    }
+
+    /**
+     * Set how much the photo is dimmed, underneath the tint and the gradients.
+     * @param alpha the alpha of the black dim overlay, from 0 to 1.
+     */
+    public void setDimAlpha(float alpha) {
+        final int color = Color.argb(Math.round(alpha * 0xFF), 0, 0, 0);
+        if (dimColor != color) {
+            dimColor = color;
+            invalidate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (Color.alpha(dimColor) != 0) {
+            canvas.drawColor(dimColor);
+        }
+
+        if (Color.alpha(tintColor) != 0) {
+            canvas.drawColor(tintColor);
+        }
+
+        if (gradientAlpha == 0) {
+            return;
+        }
+
+        gradientPaint.setAlpha(gradientAlpha);
+        final int width = getWidth();
+
+        if (actionBarGradient != null) {
+            gradientPaint.setShader(actionBarGradient);
+            canvas.drawRect(0, 0, width, actionBarGradientHeight, gradientPaint);
+        }
+
+        if (titleGradient != null) {
+            final int saveCount = canvas.save();
+            canvas.translate(0, getHeight() - titleGradientHeight);
+            gradientPaint.setShader(titleGradient);
+            canvas.drawRect(0, 0, width, titleGradientHeight, gradientPaint);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+}
@@ -27,9 +27,10 @@ import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Point;
-import android.graphics.drawable.GradientDrawable;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v7.widget.ActionMenuView;
 import android.support.v7.widget.Toolbar;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -37,7 +38,6 @@ import android.util.TypedValue;
 import android.view.Display;
 import android.view.Gravity;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
@@ -54,6 +54,9 @@ import android.widget.ScrollView;
 import android.widget.Scroller;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A custom {@link ViewGroup} that operates similarly to a {@link ScrollView}, except with multiple
  * subviews. These subviews are scrolled or shrinked one at a time, until each reaches their
@@ -80,11 +83,6 @@ public class MultiShrinkScroller extends FrameLayout {
         SLIDE_UP, EXPAND_FROM_VIEW
     }
 
-    /**
-     * 1000 pixels per millisecond. Ie, 1 pixel per second.
-     */
-    private static final int PIXELS_PER_SECOND = 1000;
-
     /**
      * The duration that the activity should take to animate onto screen.
      */
@@ -112,23 +110,24 @@ public class MultiShrinkScroller extends FrameLayout {
     private static final float SPRING_DAMPENING_FACTOR = 0.01f;
 
     private float[] lastEventPosition = { 0, 0 };
-    private VelocityTracker velocityTracker;
+    private float scrollRemainder;
+    private final VelocityEstimator velocityEstimator = new VelocityEstimator();
     private boolean isBeingDragged = false;
     private boolean receivedDown = false;
     private boolean isFullscreenDownwardsFling = false;
+    private boolean isFullscreenHeld = false;
     private ScrollView scrollView;
     private View scrollViewChild;
     private View toolbar;
+    private Toolbar actionBar;
     private ImageView photoView;
     private FloatingActionButton fab;
     private View photoViewContainer;
     private View transparentView;
     private MultiShrinkScrollerListener listener;
     private TextView largeTextView;
-    private View photoTouchInterceptOverlay;
+    private HeaderOverlayView photoTouchInterceptOverlay;
     private TextView invisiblePlaceholderTextView;
-    private View titleGradientView;
-    private View actionBarGradientView;
     private View startColumn;
     private int headerTintColor;
     private int maximumHeaderHeight;
@@ -138,11 +137,24 @@ public class MultiShrinkScroller extends FrameLayout {
     private int maximumHeaderTextSize;
     private int collapsedTitleBottomMargin;
     private int collapsedTitleStartMargin;
+    private int titleWidth;
     private boolean hasEverTouchedTheTop;
     private boolean isTouchDisabledForDismissAnimation;
     private boolean enableFab = false;
+    private TouchTrace touchTrace;
+    private boolean enableUnbufferedDragDispatch = true;
+    private boolean enablePredictiveDismiss = false;
+    private boolean isDispatchUnbuffered;
+    private boolean isDragFramePending;
+    private float pendingDragDelta;
+    private float pendingDragX;
+    private View photoBackground;
+    private View headerContentContainer;
+    private boolean isPhotoCulled;
+    private final List<View> culledPhotoViews = new ArrayList<View>(3);
 
     private final Scroller scroller;
+    private final Scroller dismissPredictor;
     private final EdgeEffect edgeGlowBottom;
     private final EdgeEffect edgeGlowTop;
     private final int touchSlop;
@@ -165,11 +177,6 @@ public class MultiShrinkScroller extends FrameLayout {
     private static final float Y2 = 1f;
     private final PathInterpolator textSizePathInterpolator;
 
-    private final int[] gradientColors = new int[] {0,0x88000000};
-    private GradientDrawable titleGradientDrawable = new GradientDrawable(
-            GradientDrawable.Orientation.TOP_BOTTOM, gradientColors);
-    private GradientDrawable actionBarGradientDrawable = new GradientDrawable(
-            GradientDrawable.Orientation.BOTTOM_TOP, gradientColors);
 
     /**
      * Interface for listening to scroll events.
@@ -182,9 +189,56 @@ public class MultiShrinkScroller extends FrameLayout {
         void onEntranceAnimationDone();
         void onEnterFullscreen();
         void onExitFullscreen();
+        void onStartDrag();
+        void onStopDrag();
+
+    }
+
+    /**
+     * Interface for observing the scroll progress. Any number of these can be added with
+     * {@link #addOnScrollProgressListener(OnScrollProgressListener)}, and each of them is called
+     * at most once per frame, right before the frame is drawn, if anything has changed.
+     */
+    public interface OnScrollProgressListener {
+
+        /**
+         * Called with the current scroll progress.
+         * @param collapseFraction how far the header has collapsed, from 0 when it is fully
+         *                         expanded to 1 when it is at its minimum height.
+         * @param gapFraction the height of the transparent gap above the content, 1 at the
+         *                    starting position, 0 when fullscreen and more than 1 while being
+         *                    dragged down.
+         * @param isFlinging true while a fling is running.
+         * @param velocity the scroll velocity in pixels per second, positive when the content
+         *                 is moving up.
+         */
+        void onScrollProgress(float collapseFraction, float gapFraction, boolean isFlinging,
+                              float velocity);
 
     }
 
+    private static final OnScrollProgressListener[] NO_PROGRESS_LISTENERS =
+            new OnScrollProgressListener[0];
+    private static final ScrollBinding[] NO_SCROLL_BINDINGS = new ScrollBinding[0];
+
+    // Copied whenever a listener or binding is added or removed, so that dispatching never
+    // allocates and listeners can remove themselves while being called.
+    private OnScrollProgressListener[] progressListeners = NO_PROGRESS_LISTENERS;
+    private ScrollBinding[] scrollBindings = NO_SCROLL_BINDINGS;
+    private boolean isProgressDirty;
+
+    private final ViewTreeObserver.OnPreDrawListener progressDispatcher =
+            new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (isProgressDirty) {
+                isProgressDirty = false;
+                dispatchScrollProgress();
+            }
+            return true;
+        }
+    };
+
     /**
      * Listener for snapping the content to the bottom of the screen.
      */
@@ -202,6 +256,39 @@ public class MultiShrinkScroller extends FrameLayout {
         }
     };
 
+    /**
+     * Counts the scroller's animations that are running, for {@link SlidingDebug}.
+     */
+    private int liveAnimatorCount;
+    private final AnimatorListener liveAnimatorCounter = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+            liveAnimatorCount++;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            liveAnimatorCount--;
+        }
+    };
+
+    /**
+     * Notifies the listener once the content has been dragged entirely off of the bottom. This
+     * is kept as a field so that scrolling doesn't allocate a new runnable on every frame.
+     */
+    private boolean isScrolledOffBottomPending;
+    private final Runnable scrolledOffBottomRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isScrolledOffBottomPending = false;
+            if (listener != null) {
+                listener.onScrolledOffBottom();
+                // No other messages need to be sent to the listener.
+                listener = null;
+            }
+        }
+    };
+
     /**
      * Interpolator from android.support.v4.view.ViewPager. Snappier and more elastic feeling
      * than the default interpolator.
@@ -251,6 +338,7 @@ public class MultiShrinkScroller extends FrameLayout {
         edgeGlowBottom = new EdgeEffect(context);
         edgeGlowTop = new EdgeEffect(context);
         scroller = new Scroller(context, INTERPOLATOR);
+        dismissPredictor = new Scroller(context, INTERPOLATOR);
         touchSlop = configuration.getScaledTouchSlop();
         minimumVelocity = configuration.getScaledMinimumFlingVelocity();
         maximumVelocity = configuration.getScaledMaximumFlingVelocity();
@@ -308,18 +396,20 @@ public class MultiShrinkScroller extends FrameLayout {
         invisiblePlaceholderTextView = (TextView) findViewById(R.id.placeholder_textview);
         startColumn = findViewById(R.id.empty_start_column);
 
-        // Touching the empty space should close the card
+        // Touching the empty space should close the card. Nobody can tap it before the first
+        // frame is shown, so wait until the main thread is idle to wire it up.
         if (startColumn != null) {
-            startColumn.setOnClickListener(new OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    scrollOffBottom();
-                }
-            });
-            findViewById(R.id.empty_end_column).setOnClickListener(new OnClickListener() {
+            SchedulingUtils.doOnIdle(new Runnable() {
                 @Override
-                public void onClick(View v) {
-                    scrollOffBottom();
+                public void run() {
+                    final OnClickListener dismissListener = new OnClickListener() {
+                        @Override
+                        public void onClick(View v) {
+                            scrollOffBottom();
+                        }
+                    };
+                    startColumn.setOnClickListener(dismissListener);
+                    findViewById(R.id.empty_end_column).setOnClickListener(dismissListener);
                 }
             });
         }
@@ -327,15 +417,27 @@ public class MultiShrinkScroller extends FrameLayout {
         this.isOpenImageSquare = isOpenContactSquare;
 
         photoView = (ImageView) findViewById(R.id.photo);
+        photoBackground = findViewById(R.id.photo_background);
+        headerContentContainer = findViewById(R.id.header_content_container);
         fab = (FloatingActionButton) findViewById(R.id.fab);
 
-        titleGradientView = findViewById(R.id.title_gradient);
-        titleGradientView.setBackgroundDrawable(titleGradientDrawable);
-        actionBarGradientView = findViewById(R.id.action_bar_gradient);
-        actionBarGradientView.setBackgroundDrawable(actionBarGradientDrawable);
-        collapsedTitleStartMargin = ((Toolbar) findViewById(R.id.toolbar)).getContentInsetStart();
+        actionBar = (Toolbar) findViewById(R.id.toolbar);
+        collapsedTitleStartMargin = actionBar.getContentInsetStart();
 
-        photoTouchInterceptOverlay = findViewById(R.id.photo_touch_intercept_overlay);
+        // Menu items can be added to the toolbar at any point, and the collapsed title has to
+        // stay clear of them.
+        if (!isTwoPanel) {
+            actionBar.addOnLayoutChangeListener(new OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    updateTitleWidth();
+                }
+            });
+        }
+
+        photoTouchInterceptOverlay =
+                (HeaderOverlayView) findViewById(R.id.photo_touch_intercept_overlay);
         if (!isTwoPanel) {
             photoTouchInterceptOverlay.setOnClickListener(new OnClickListener() {
                 @Override
@@ -391,10 +493,20 @@ public class MultiShrinkScroller extends FrameLayout {
                     largeTextLayoutParams.gravity = Gravity.BOTTOM | Gravity.START;
                     largeTextView.setLayoutParams(largeTextLayoutParams);
                 } else {
-                    // Set the width of largeTextView as if it was nested inside
-                    // photoViewContainer.
-                    largeTextView.setWidth(photoViewContainer.getWidth()
-                            - 2 * maximumTitleMargin);
+                    // The title is moved with translations from here on, so that scrolling
+                    // doesn't have to lay it out again. Anchor it to the top start corner, but
+                    // keep the end margin, which leaves room for the fab.
+                    final LayoutParams largeTextLayoutParams
+                            = (LayoutParams) largeTextView.getLayoutParams();
+                    largeTextLayoutParams.topMargin = 0;
+                    largeTextLayoutParams.bottomMargin = 0;
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                        largeTextLayoutParams.setMarginStart(0);
+                    } else {
+                        largeTextLayoutParams.leftMargin = 0;
+                    }
+                    largeTextView.setLayoutParams(largeTextLayoutParams);
+                    updateTitleWidth();
                 }
 
                 calculateCollapsedLargeTitlePadding();
@@ -404,19 +516,66 @@ public class MultiShrinkScroller extends FrameLayout {
         });
     }
 
+    /**
+     * Put the scroller back into its starting position after it has been dismissed, so that
+     * the same hierarchy can be shown again. This must only be called after
+     * {@link #initialize(MultiShrinkScrollerListener, boolean)} has been called and the
+     * scroller has been laid out once.
+     * @param listener the listener to notify of scroll events from now on.
+     */
+    public void reset(MultiShrinkScrollerListener listener) {
+        this.listener = listener;
+
+        scroller.forceFinished(true);
+        velocityEstimator.clear();
+        removeCallbacks(scrolledOffBottomRunnable);
+        removeCallbacks(dragFrameRunnable);
+        isScrolledOffBottomPending = false;
+        isDragFramePending = false;
+        pendingDragDelta = 0;
+        scrollRemainder = 0;
+        isBeingDragged = false;
+        isDispatchUnbuffered = false;
+        receivedDown = false;
+        isFullscreenDownwardsFling = false;
+        isFullscreenHeld = false;
+        isTouchDisabledForDismissAnimation = false;
+        hasEverTouchedTheTop = false;
+        openAnimation = OpenAnimation.SLIDE_UP;
+
+        // Undo anything the expansion animations may have changed.
+        setTranslationX(0);
+        setTranslationY(0);
+        setAlpha(1f);
+        final ViewGroup.LayoutParams params = getLayoutParams();
+        if (params != null) {
+            params.width = ViewGroup.LayoutParams.MATCH_PARENT;
+            params.height = ViewGroup.LayoutParams.MATCH_PARENT;
+            setLayoutParams(params);
+        }
+
+        scrollView.scrollTo(0, 0);
+        setTransparentViewHeight(transparentStartHeight);
+        setHeaderHeight(getMaximumScrollableHeaderHeight());
+        updateFabStatus();
+    }
+
     private void configureGradientViewHeights() {
-        final LayoutParams actionBarGradientLayoutParams
-                = (LayoutParams) actionBarGradientView.getLayoutParams();
-        actionBarGradientLayoutParams.height = actionBarSize;
-        actionBarGradientView.setLayoutParams(actionBarGradientLayoutParams);
-        final LayoutParams titleGradientLayoutParams
-                = (LayoutParams) titleGradientView.getLayoutParams();
         final float TITLE_GRADIENT_SIZE_COEFFICIENT = 1.25f;
         final LayoutParams largeTextLayoutParms
                 = (LayoutParams) largeTextView.getLayoutParams();
-        titleGradientLayoutParams.height = (int) ((largeTextView.getHeight()
-                + largeTextLayoutParms.bottomMargin) * TITLE_GRADIENT_SIZE_COEFFICIENT);
-        titleGradientView.setLayoutParams(titleGradientLayoutParams);
+        photoTouchInterceptOverlay.setGradientHeights(actionBarSize,
+                (int) ((largeTextView.getHeight() + largeTextLayoutParms.bottomMargin)
+                        * TITLE_GRADIENT_SIZE_COEFFICIENT));
+    }
+
+    /**
+     * Dim the header photo, ie to make the title easier to read on top of a bright image. The
+     * dim is drawn underneath the tint, so it goes away as the header collapses.
+     * @param alpha the alpha of the dim, from 0 to 1.
+     */
+    public void setHeaderDimAlpha(float alpha) {
+        photoTouchInterceptOverlay.setDimAlpha(alpha);
     }
 
     /**
@@ -453,6 +612,30 @@ public class MultiShrinkScroller extends FrameLayout {
         ((View) photoView.getParent()).setVisibility(View.GONE);
     }
 
+    /**
+     * Record all touch events that reach the scroller into a trace, so that they can be replayed
+     * later on. Pass null to stop recording.
+     * @param touchTrace the trace to record to.
+     */
+    public void setTouchTrace(TouchTrace touchTrace) {
+        this.touchTrace = touchTrace;
+    }
+
+    /**
+     * Record the event if we have a trace and pass it along. Events are recorded here rather
+     * than in onInterceptTouchEvent() and onTouchEvent(), since those may both see the same
+     * event.
+     * @param event the touch event.
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (touchTrace != null) {
+            touchTrace.record(event);
+        }
+
+        return super.dispatchTouchEvent(event);
+    }
+
     /**
      * Catch the touch event and act on it.
      * @param event the touch event.
@@ -460,10 +643,7 @@ public class MultiShrinkScroller extends FrameLayout {
      */
     @Override
     public boolean onInterceptTouchEvent(MotionEvent event) {
-        if (velocityTracker == null) {
-            velocityTracker = VelocityTracker.obtain();
-        }
-        velocityTracker.addMovement(event);
+        velocityEstimator.addMovement(event);
 
         // The only time we want to intercept touch events is when we are being dragged.
         return shouldStartDrag(event);
@@ -483,7 +663,7 @@ public class MultiShrinkScroller extends FrameLayout {
             case MotionEvent.ACTION_DOWN:
                 updateLastEventPosition(event);
                 if (!scroller.isFinished()) {
-                    startDrag();
+                    startDrag(event);
                     return true;
                 } else {
                     receivedDown = true;
@@ -495,7 +675,7 @@ public class MultiShrinkScroller extends FrameLayout {
             case MotionEvent.ACTION_MOVE:
                 if (motionShouldStartDrag(event)) {
                     updateLastEventPosition(event);
-                    startDrag();
+                    startDrag(event);
                     return true;
                 }
                 break;
@@ -514,10 +694,7 @@ public class MultiShrinkScroller extends FrameLayout {
 
         final int action = event.getAction();
 
-        if (velocityTracker == null) {
-            velocityTracker = VelocityTracker.obtain();
-        }
-        velocityTracker.addMovement(event);
+        velocityEstimator.addMovement(event);
 
         if (!isBeingDragged) {
             if (shouldStartDrag(event)) {
@@ -534,35 +711,30 @@ public class MultiShrinkScroller extends FrameLayout {
         switch (action) {
             case MotionEvent.ACTION_MOVE:
                 final float delta = updatePositionAndComputeDelta(event);
-                scrollTo(0, getScroll() + (int) delta);
                 receivedDown = false;
 
-                if (isBeingDragged) {
-                    final int distanceFromMaxScrolling = getMaximumScrollUpwards() - getScroll();
-                    if (delta > distanceFromMaxScrolling && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                        // The ScrollView is being pulled upwards while there is no more
-                        // content offscreen, and the view port is already fully expanded.
-                        edgeGlowBottom.onPull(delta / getHeight(), 1 - event.getX() / getWidth());
-                    }
-
-                    if (!edgeGlowBottom.isFinished()) {
+                if (isDispatchUnbuffered) {
+                    // Unbuffered events can arrive many times per frame, so only collect them
+                    // here and apply them all at once on the next frame.
+                    pendingDragDelta += delta;
+                    pendingDragX = event.getX();
+                    if (!isDragFramePending) {
+                        isDragFramePending = true;
                         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                            postInvalidateOnAnimation();
+                            postOnAnimation(dragFrameRunnable);
                         } else {
-                            postInvalidate();
+                            post(dragFrameRunnable);
                         }
                     }
-
-                    if (shouldDismissOnScroll()) {
-                        scrollOffBottom();
-                    }
-
+                } else {
+                    applyDragDelta(delta, event.getX());
                 }
                 break;
 
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                stopDrag(action == MotionEvent.ACTION_CANCEL);
+                flushPendingDrag();
+                stopDrag(action == MotionEvent.ACTION_CANCEL, event.getEventTime());
                 receivedDown = false;
                 break;
         }
@@ -570,6 +742,113 @@ public class MultiShrinkScroller extends FrameLayout {
         return true;
     }
 
+    /**
+     * Scroll by the distance the finger has moved since the last time this was called.
+     * @param delta the distance that was dragged.
+     * @param x the latest horizontal position of the finger.
+     */
+    private void applyDragDelta(float delta, float x) {
+        // We can only scroll by whole pixels. Carry the fraction over to the next event
+        // instead of dropping it, otherwise slow drags fall behind the finger.
+        scrollRemainder += delta;
+        final int scrollDelta = (int) scrollRemainder;
+        scrollRemainder -= scrollDelta;
+        scrollTo(0, getScroll() + scrollDelta);
+
+        if (isBeingDragged) {
+            final int distanceFromMaxScrolling = getMaximumScrollUpwards() - getScroll();
+            if (delta > distanceFromMaxScrolling && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                // The ScrollView is being pulled upwards while there is no more
+                // content offscreen, and the view port is already fully expanded.
+                edgeGlowBottom.onPull(delta / getHeight(), 1 - x / getWidth());
+            }
+
+            if (!edgeGlowBottom.isFinished()) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    postInvalidateOnAnimation();
+                } else {
+                    postInvalidate();
+                }
+            }
+
+            if (shouldDismissOnScroll() || shouldPredictDismiss()) {
+                scrollOffBottom();
+            }
+
+        }
+    }
+
+    /**
+     * Check whether the drag is heading down fast enough that, if the finger were lifted now,
+     * the fling would carry the gap past the distance that dismisses while scrolling. The exit
+     * animation can then start right away rather than once the finger lifts.
+     */
+    private boolean shouldPredictDismiss() {
+        if (!enablePredictiveDismiss || !hasEverTouchedTheTop || isFullscreenHeld) {
+            return false;
+        }
+
+        // Positive when the finger moves down, which scrolls the content down.
+        final float velocity = getCurrentVelocity();
+        if (velocity <= minimumVelocity) {
+            return false;
+        }
+
+        // Run the same fling the scroller would, without applying it, to see where it ends.
+        dismissPredictor.fling(0, 0, 0, (int) -velocity, 0, 0, -Integer.MAX_VALUE,
+                Integer.MAX_VALUE);
+        final int flingDistance = -dismissPredictor.getFinalY();
+        dismissPredictor.forceFinished(true);
+
+        return getTransparentViewHeight() + flingDistance > dismissDistanceOnScroll;
+    }
+
+    /**
+     * Applies the drag events that were collected since the last frame.
+     */
+    private final Runnable dragFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isDragFramePending = false;
+            final float delta = pendingDragDelta;
+            pendingDragDelta = 0;
+
+            if (isBeingDragged && !isTouchDisabledForDismissAnimation) {
+                applyDragDelta(delta, pendingDragX);
+            }
+        }
+    };
+
+    /**
+     * Apply any drag events that are still waiting for the next frame right away.
+     */
+    private void flushPendingDrag() {
+        if (isDragFramePending) {
+            removeCallbacks(dragFrameRunnable);
+            dragFrameRunnable.run();
+        }
+    }
+
+    /**
+     * Set whether touch events should be delivered as soon as they arrive while the content is
+     * being dragged, rather than batched to the display refresh. This lowers the latency between
+     * the finger and the content on Lollipop+. Enabled by default.
+     * @param enable true to request unbuffered dispatch while dragging.
+     */
+    public void setUnbufferedDragDispatch(boolean enable) {
+        this.enableUnbufferedDragDispatch = enable;
+    }
+
+    /**
+     * Set whether a downward drag should dismiss as soon as its velocity shows that the fling
+     * would carry it past the dismiss distance, rather than when the finger is lifted. The exit
+     * animation then starts a few frames earlier. Disabled by default.
+     * @param enable true to dismiss on the predicted end of the drag.
+     */
+    public void setPredictiveDismiss(boolean enable) {
+        this.enablePredictiveDismiss = enable;
+    }
+
     /**
      * Sets the tint color that should be applied to the header. If an image is present, this
      * will go behind the image and show over it as the activity is scrolled, otherwise it will
@@ -595,6 +874,7 @@ public class MultiShrinkScroller extends FrameLayout {
             final ObjectAnimator animator = ObjectAnimator.ofInt(this, "headerHeight",
                     maximumHeaderHeight);
             animator.setDuration(ANIMATION_DURATION);
+            animator.addListener(liveAnimatorCounter);
             animator.start();
             // Scroll nested scroll view to its top
             if (scrollView.getScrollY() != 0) {
@@ -603,15 +883,30 @@ public class MultiShrinkScroller extends FrameLayout {
         }
     }
 
-    private void startDrag() {
+    private void startDrag(MotionEvent event) {
         isBeingDragged = true;
+        scrollRemainder = 0;
+
+        // The rest of this gesture will be delivered unbatched, the frame runnable above takes
+        // care of coalescing the events again.
+        if (enableUnbufferedDragDispatch && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            requestUnbufferedDispatch(event);
+            isDispatchUnbuffered = true;
+        }
         scroller.abortAnimation();
+
+        if (listener != null) {
+            listener.onStartDrag();
+        }
     }
 
-    private void stopDrag(boolean cancelled) {
+    private void stopDrag(boolean cancelled, long eventTime) {
         isBeingDragged = false;
+        isDispatchUnbuffered = false;
         if (!cancelled && getChildCount() > 0) {
-            final float velocity = getCurrentVelocity();
+            // Take the velocity at the time the finger lifted, which is 0 if it held still
+            // before that.
+            final float velocity = getCurrentVelocity(eventTime);
             if (velocity > minimumVelocity || velocity < -minimumVelocity) {
                 fling(-velocity);
                 onDragFinished(scroller.getFinalY() - scroller.getStartY());
@@ -622,12 +917,13 @@ public class MultiShrinkScroller extends FrameLayout {
             onDragFinished(/* flingDelta = */ 0);
         }
 
-        if (velocityTracker != null) {
-            velocityTracker.recycle();
-            velocityTracker = null;
-        }
+        velocityEstimator.clear();
 
         edgeGlowBottom.onRelease();
+
+        if (listener != null) {
+            listener.onStopDrag();
+        }
     }
 
     private void onDragFinished(int flingDelta) {
@@ -720,6 +1016,11 @@ public class MultiShrinkScroller extends FrameLayout {
         isTouchDisabledForDismissAnimation = true;
         scroller.forceFinished(true);
 
+        // Drags that haven't been applied yet don't matter anymore.
+        removeCallbacks(dragFrameRunnable);
+        isDragFramePending = false;
+        pendingDragDelta = 0;
+
         if (!willUseReverseExpansion()) {
             final Interpolator interpolator = new AcceleratingFlingInterpolator(
                     EXIT_FLING_ANIMATION_DURATION_MS, getCurrentVelocity(),
@@ -730,6 +1031,7 @@ public class MultiShrinkScroller extends FrameLayout {
             translateAnimation.setInterpolator(interpolator);
             translateAnimation.setDuration(EXIT_FLING_ANIMATION_DURATION_MS);
             translateAnimation.addListener(exitAnimationListner);
+            translateAnimation.addListener(liveAnimatorCounter);
             translateAnimation.start();
         } else {
             reverseExpansionAnimation();
@@ -774,13 +1076,18 @@ public class MultiShrinkScroller extends FrameLayout {
             animator.addUpdateListener(new AnimatorUpdateListener() {
                 @Override
                 public void onAnimationUpdate(ValueAnimator animation) {
-                    if (animation.getAnimatedValue().equals(desiredValue) && listener != null) {
+                    // Compare the fraction rather than the animated value, which would box an
+                    // Integer on every frame.
+                    if (animation.getAnimatedFraction() >= 1f && listener != null) {
                         listener.onEntranceAnimationDone();
                     }
                 }
             });
 
 
+            animator.addListener(liveAnimatorCounter);
+
+
             animator.start();
         }
 
@@ -818,44 +1125,34 @@ public class MultiShrinkScroller extends FrameLayout {
         int screenHeight = size.y;
         int screenWidth = size.x;
 
-        final ValueAnimator heightExpansion = ValueAnimator.ofInt(expansionViewHeight, getHeight());
+        final ValueAnimator heightExpansion = createSizeAnimator(expansionViewHeight, getHeight(),
+                /* animateHeight = */ true);
         heightExpansion.setInterpolator(interpolator);
-        heightExpansion.setDuration(ANIMATION_DURATION);
-        heightExpansion.addUpdateListener(new AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int val = (int) animation.getAnimatedValue();
-
-                ViewGroup.LayoutParams params = getLayoutParams();
-                params.height = val;
-                setLayoutParams(params);
-            }
-        });
         heightExpansion.start();
 
-        final ValueAnimator widthExpansion = ValueAnimator.ofInt(expansionViewWidth, getWidth());
+        final ValueAnimator widthExpansion = createSizeAnimator(expansionViewWidth, getWidth(),
+                /* animateHeight = */ false);
         widthExpansion.setInterpolator(interpolator);
-        widthExpansion.setDuration(ANIMATION_DURATION);
-        widthExpansion.addUpdateListener(new AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int val = (int) animation.getAnimatedValue();
-
-                ViewGroup.LayoutParams params = getLayoutParams();
-                params.width = val;
-                setLayoutParams(params);
-            }
-        });
         widthExpansion.start();
 
         ObjectAnimator translationX = ObjectAnimator.ofFloat(this, View.TRANSLATION_X, expansionLeftOffset, 0f);
         translationX.setInterpolator(interpolator);
         translationX.setDuration(ANIMATION_DURATION);
+        translationX.addListener(liveAnimatorCounter);
         translationX.start();
 
         ObjectAnimator translationY = ObjectAnimator.ofFloat(this, View.TRANSLATION_Y, expansionTopOffset, 0f);
         translationY.setInterpolator(interpolator);
         translationY.setDuration(ANIMATION_DURATION);
+        translationY.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (listener != null) {
+                    listener.onEntranceAnimationDone();
+                }
+            }
+        });
+        translationY.addListener(liveAnimatorCounter);
         translationY.start();
     }
 
@@ -877,48 +1174,60 @@ public class MultiShrinkScroller extends FrameLayout {
         int screenHeight = size.y;
         int screenWidth = size.x;
 
-        final ValueAnimator heightExpansion = ValueAnimator.ofInt(screenHeight, expansionViewHeight);
+        final ValueAnimator heightExpansion = createSizeAnimator(screenHeight, expansionViewHeight,
+                /* animateHeight = */ true);
         heightExpansion.setInterpolator(interpolator);
-        heightExpansion.setDuration(ANIMATION_DURATION);
-        heightExpansion.addUpdateListener(new AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int val = (int) animation.getAnimatedValue();
-
-                ViewGroup.LayoutParams params = getLayoutParams();
-                params.height = val;
-                setLayoutParams(params);
-            }
-        });
         heightExpansion.start();
 
-        final ValueAnimator widthExpansion = ValueAnimator.ofInt(getWidth(), expansionViewWidth);
+        final ValueAnimator widthExpansion = createSizeAnimator(getWidth(), expansionViewWidth,
+                /* animateHeight = */ false);
         widthExpansion.setInterpolator(interpolator);
-        widthExpansion.setDuration(ANIMATION_DURATION);
-        widthExpansion.addUpdateListener(new AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int val = (int) animation.getAnimatedValue();
-
-                ViewGroup.LayoutParams params = getLayoutParams();
-                params.width = val;
-                setLayoutParams(params);
-            }
-        });
         widthExpansion.start();
 
         ObjectAnimator translationX = ObjectAnimator.ofFloat(this, View.TRANSLATION_X, 0f, expansionLeftOffset);
         translationX.setInterpolator(interpolator);
         translationX.setDuration(ANIMATION_DURATION);
+        translationX.addListener(liveAnimatorCounter);
         translationX.start();
 
         ObjectAnimator translationY = ObjectAnimator.ofFloat(this, View.TRANSLATION_Y, 0f, expansionTopOffset);
         translationY.setInterpolator(interpolator);
         translationY.setDuration(ANIMATION_DURATION);
         translationY.addListener(exitAnimationListner);
+        translationY.addListener(liveAnimatorCounter);
         translationY.start();
     }
 
+    /**
+     * Create an animator that resizes this view between two sizes. The size is computed from the
+     * animated fraction so that no boxed values are created on each frame.
+     * @param from the starting size.
+     * @param to the final size.
+     * @param animateHeight true to animate the height, false to animate the width.
+     * @return the animator, not yet started.
+     */
+    private ValueAnimator createSizeAnimator(final int from, final int to,
+                                             final boolean animateHeight) {
+        final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(ANIMATION_DURATION);
+        animator.addUpdateListener(new AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                final int val = (int) (from + (to - from) * animation.getAnimatedFraction());
+
+                ViewGroup.LayoutParams params = getLayoutParams();
+                if (animateHeight) {
+                    params.height = val;
+                } else {
+                    params.width = val;
+                }
+                setLayoutParams(params);
+            }
+        });
+        animator.addListener(liveAnimatorCounter);
+        return animator;
+    }
+
     /**
      * Scroll to a certain position.
      * @param x the x position.
@@ -940,6 +1249,7 @@ public class MultiShrinkScroller extends FrameLayout {
         updateFabStatus();
         final boolean isFullscreen = getScrollNeededToBeFullScreen() <= 0;
         hasEverTouchedTheTop |= isFullscreen;
+        markScrollProgressDirty();
 
         if (listener != null) {
             if (wasFullscreen && !isFullscreen) {
@@ -963,7 +1273,9 @@ public class MultiShrinkScroller extends FrameLayout {
     }
 
     /**
-     * Set the height of the toolbar and update its tint accordingly.
+     * Set the height of the toolbar and update its tint accordingly. This changes the collapse
+     * fraction without scrolling, ie while expandHeader() animates it, so the progress listeners
+     * and bindings are updated from here as well.
      */
     public void setHeaderHeight(int height) {
         final ViewGroup.LayoutParams toolbarLayoutParams
@@ -972,6 +1284,17 @@ public class MultiShrinkScroller extends FrameLayout {
         toolbar.setLayoutParams(toolbarLayoutParams);
         updatePhotoTintAndDropShadow();
         updateHeaderTextSizeAndMargin();
+        markScrollProgressDirty();
+    }
+
+    /**
+     * Keep the gap above the header closed while scrolling down, ie while the window behind it
+     * is opaque and can't show the activity underneath yet. Scrolling down stops once the header
+     * reaches the top of the screen, until this is set back to false.
+     * @param held true to keep the gap closed.
+     */
+    public void holdFullscreen(boolean held) {
+        isFullscreenHeld = held;
     }
 
     /**
@@ -1148,11 +1471,197 @@ public class MultiShrinkScroller extends FrameLayout {
     }
 
     private float getCurrentVelocity() {
-        if (velocityTracker == null) {
+        return getCurrentVelocity(SystemClock.uptimeMillis());
+    }
+
+    private float getCurrentVelocity(long timeMs) {
+        return velocityEstimator.getVelocity(timeMs, maximumVelocity);
+    }
+
+    /**
+     * Get the velocity of the current drag. This is available at any point during the gesture,
+     * not just once the finger has been lifted, so it can be used to predict where a drag is
+     * going to end up.
+     * @return the vertical velocity in pixels per second, positive when dragging down.
+     */
+    public float getDragVelocity() {
+        return getCurrentVelocity();
+    }
+
+    /**
+     * Add a listener for the scroll progress.
+     * @param listener the listener.
+     */
+    public void addOnScrollProgressListener(OnScrollProgressListener listener) {
+        final OnScrollProgressListener[] listeners =
+                new OnScrollProgressListener[progressListeners.length + 1];
+        System.arraycopy(progressListeners, 0, listeners, 0, progressListeners.length);
+        listeners[progressListeners.length] = listener;
+        progressListeners = listeners;
+        markScrollProgressDirty();
+    }
+
+    /**
+     * Remove a listener that was added with
+     * {@link #addOnScrollProgressListener(OnScrollProgressListener)}.
+     * @param listener the listener.
+     */
+    public void removeOnScrollProgressListener(OnScrollProgressListener listener) {
+        final OnScrollProgressListener[] current = progressListeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                if (current.length == 1) {
+                    progressListeners = NO_PROGRESS_LISTENERS;
+                } else {
+                    final OnScrollProgressListener[] listeners =
+                            new OnScrollProgressListener[current.length - 1];
+                    System.arraycopy(current, 0, listeners, 0, i);
+                    System.arraycopy(current, i + 1, listeners, i, current.length - i - 1);
+                    progressListeners = listeners;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Bind a property of a header or content view to how far the header has collapsed. The
+     * binding is evaluated before every frame in which the scroll has changed.
+     * @param binding the binding.
+     */
+    public void addScrollBinding(ScrollBinding binding) {
+        final ScrollBinding[] bindings = new ScrollBinding[scrollBindings.length + 1];
+        System.arraycopy(scrollBindings, 0, bindings, 0, scrollBindings.length);
+        bindings[scrollBindings.length] = binding;
+        scrollBindings = bindings;
+        markScrollProgressDirty();
+    }
+
+    /**
+     * Remove a binding that was added with {@link #addScrollBinding(ScrollBinding)}. The
+     * property keeps its current value.
+     * @param binding the binding.
+     */
+    public void removeScrollBinding(ScrollBinding binding) {
+        final ScrollBinding[] current = scrollBindings;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == binding) {
+                if (current.length == 1) {
+                    scrollBindings = NO_SCROLL_BINDINGS;
+                } else {
+                    final ScrollBinding[] bindings = new ScrollBinding[current.length - 1];
+                    System.arraycopy(current, 0, bindings, 0, i);
+                    System.arraycopy(current, i + 1, bindings, i, current.length - i - 1);
+                    scrollBindings = bindings;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get how far the header has collapsed.
+     * @return 0 when the header is fully expanded, 1 when it is at its minimum height.
+     */
+    public float getCollapseFraction() {
+        if (maximumHeaderHeight <= minimumHeaderHeight) {
             return 0;
         }
-        velocityTracker.computeCurrentVelocity(PIXELS_PER_SECOND, maximumVelocity);
-        return velocityTracker.getYVelocity();
+
+        final float fraction = (maximumHeaderHeight - getToolbarHeight())
+                / (float) (maximumHeaderHeight - minimumHeaderHeight);
+        return Math.max(0, Math.min(1, fraction));
+    }
+
+    private void markScrollProgressDirty() {
+        if ((progressListeners.length == 0 && scrollBindings.length == 0) || isProgressDirty) {
+            return;
+        }
+
+        isProgressDirty = true;
+        // Make sure a frame comes, scrollTo() can be called from computeScroll() during a draw.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postInvalidateOnAnimation();
+        } else {
+            postInvalidate();
+        }
+    }
+
+    private void dispatchScrollProgress() {
+        final float collapseFraction = getCollapseFraction();
+
+        final ScrollBinding[] bindings = scrollBindings;
+        for (ScrollBinding binding : bindings) {
+            binding.apply(collapseFraction);
+        }
+
+        final OnScrollProgressListener[] listeners = progressListeners;
+        if (listeners.length == 0) {
+            return;
+        }
+
+        final float gapFraction = transparentStartHeight == 0 ? 0 :
+                Math.max(0, getTransparentViewHeight() / (float) transparentStartHeight);
+        final boolean isFlinging = !scroller.isFinished();
+
+        final float velocity;
+        if (isFlinging) {
+            // The scroller only knows the speed, the direction comes from where it is heading.
+            velocity = scroller.getFinalY() >= scroller.getCurrY() ?
+                    scroller.getCurrVelocity() : -scroller.getCurrVelocity();
+        } else if (isBeingDragged) {
+            velocity = -getCurrentVelocity();
+        } else {
+            velocity = 0;
+        }
+
+        for (OnScrollProgressListener listener : listeners) {
+            listener.onScrollProgress(collapseFraction, gapFraction, isFlinging, velocity);
+        }
+    }
+
+    /**
+     * Get the number of scroller animations that have started but not ended yet.
+     * @return the number of animations.
+     */
+    int getLiveAnimatorCount() {
+        return liveAnimatorCount;
+    }
+
+    /**
+     * Get the number of callbacks that the scroller has waiting for a later frame.
+     * @return the number of callbacks.
+     */
+    int getPendingCallbackCount() {
+        return (isScrolledOffBottomPending ? 1 : 0) + (isDragFramePending ? 1 : 0)
+                + (isProgressDirty ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnPreDrawListener(progressDispatcher);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnPreDrawListener(progressDispatcher);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Set the strategy used to estimate the drag velocity for flings and dismissals.
+     * @param strategy either {@link VelocityEstimator#STRATEGY_LSQ2} (the default) or
+     *                 {@link VelocityEstimator#STRATEGY_IMPULSE}.
+     */
+    public void setVelocityStrategy(int strategy) {
+        velocityEstimator.setStrategy(strategy);
     }
 
     private void fling(float velocity) {
@@ -1186,15 +1695,20 @@ public class MultiShrinkScroller extends FrameLayout {
     }
 
     private void setTransparentViewHeight(int height) {
-        transparentView.getLayoutParams().height = height;
-        transparentView.setLayoutParams(transparentView.getLayoutParams());
+        final ViewGroup.LayoutParams params = transparentView.getLayoutParams();
+        if (params.height == height) {
+            // Setting the same layout params would still request a full layout pass.
+            return;
+        }
+
+        params.height = height;
+        transparentView.setLayoutParams(params);
     }
 
     private void scrollUp(int delta) {
         if (getTransparentViewHeight() != 0) {
             final int originalValue = getTransparentViewHeight();
-            setTransparentViewHeight(getTransparentViewHeight() - delta);
-            setTransparentViewHeight(Math.max(0, getTransparentViewHeight()));
+            setTransparentViewHeight(Math.max(0, originalValue - delta));
             delta -= originalValue - getTransparentViewHeight();
         }
         final ViewGroup.LayoutParams toolbarLayoutParams
@@ -1242,19 +1756,15 @@ public class MultiShrinkScroller extends FrameLayout {
             toolbar.setLayoutParams(toolbarLayoutParams);
             delta -= originalValue - toolbarLayoutParams.height;
         }
+        if (isFullscreenHeld) {
+            // Whatever is behind the gap can't be shown yet, so stop at the top.
+            return;
+        }
         setTransparentViewHeight(getTransparentViewHeight() - delta);
 
-        if (getScrollUntilOffBottom() <= 0) {
-            post(new Runnable() {
-                @Override
-                public void run() {
-                    if (listener != null) {
-                        listener.onScrolledOffBottom();
-                        // No other messages need to be sent to the listener.
-                        listener = null;
-                    }
-                }
-            });
+        if (getScrollUntilOffBottom() <= 0 && !isScrolledOffBottomPending) {
+            isScrolledOffBottomPending = true;
+            post(scrolledOffBottomRunnable);
         }
     }
 
@@ -1268,7 +1778,7 @@ public class MultiShrinkScroller extends FrameLayout {
         }
 
         // The pivot point for scaling should be middle of the starting side.
-        largeTextView.setPivotX(0);
+        largeTextView.setPivotX(isLayoutRtl() ? largeTextView.getWidth() : 0);
         largeTextView.setPivotY(largeTextView.getHeight() / 2);
 
         final int toolbarHeight = toolbar.getLayoutParams().height;
@@ -1278,7 +1788,7 @@ public class MultiShrinkScroller extends FrameLayout {
             // Everything is full size when the header is fully expanded.
             largeTextView.setScaleX(1);
             largeTextView.setScaleY(1);
-            setInterpolatedTitleMargins(1);
+            setInterpolatedTitlePosition(1);
             return;
         }
 
@@ -1303,7 +1813,7 @@ public class MultiShrinkScroller extends FrameLayout {
 
         largeTextView.setScaleX(scale);
         largeTextView.setScaleY(scale);
-        setInterpolatedTitleMargins(bezierOutput);
+        setInterpolatedTitlePosition(bezierOutput);
     }
 
     /**
@@ -1365,22 +1875,18 @@ public class MultiShrinkScroller extends FrameLayout {
     }
 
     /**
-     * Interpolate the title's margin size. When {@param x}=1, use the maximum title margins.
+     * Interpolate the title's position. When {@param x}=1, use the maximum title margins.
      * When {@param x}=0, use the margin values taken from {@link #invisiblePlaceholderTextView}.
+     *
+     * The title is moved with translations instead of margins, since this happens on every
+     * scroll frame and changing the margins would lay the title out again each time.
      */
-    private void setInterpolatedTitleMargins(float x) {
-        final LayoutParams titleLayoutParams
-                = (LayoutParams) largeTextView.getLayoutParams();
-        final ViewGroup.LayoutParams toolbarLayoutParams
-                = toolbar.getLayoutParams();
-
+    private void setInterpolatedTitlePosition(float x) {
         // Need to add more to margin start if there is a start column
         int startColumnWidth = startColumn == null ? 0 : startColumn.getWidth();
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            titleLayoutParams.setMarginStart((int) (collapsedTitleStartMargin * (1 - x)
-                    + maximumTitleMargin * x) + startColumnWidth);
-        }
+        final int marginStart = (int) (collapsedTitleStartMargin * (1 - x)
+                + maximumTitleMargin * x) + startColumnWidth;
 
         // How offset the title should be from the bottom of the toolbar
         final int pretendBottomMargin =  (int) (collapsedTitleBottomMargin * (1 - x)
@@ -1389,11 +1895,71 @@ public class MultiShrinkScroller extends FrameLayout {
         // calling largeTextView.getHeight() use the maximumHeaderTextSize for this calculation.
         // The getHeight() value acts unexpectedly when largeTextView is partially clipped by
         // its parent.
-        titleLayoutParams.topMargin = getTransparentViewHeight()
-                + toolbarLayoutParams.height - pretendBottomMargin
+        final int top = getTransparentViewHeight()
+                + toolbar.getLayoutParams().height - pretendBottomMargin
                 - maximumHeaderTextSize;
-        titleLayoutParams.bottomMargin = 0;
-        largeTextView.setLayoutParams(titleLayoutParams);
+
+        largeTextView.setTranslationX(isLayoutRtl() ? -marginStart : marginStart);
+        largeTextView.setTranslationY(top);
+    }
+
+    /**
+     * Set the width of largeTextView as if it was nested inside photoViewContainer. Since the
+     * title no longer shrinks with its margins while it collapses, it is also narrowed so that
+     * once it is scaled down to its collapsed size it doesn't run under the toolbar's menu items.
+     */
+    private void updateTitleWidth() {
+        if (isTwoPanel || largeTextView == null || photoViewContainer.getWidth() == 0) {
+            return;
+        }
+
+        final int containerWidth = photoViewContainer.getWidth();
+        int width = containerWidth - maximumTitleMargin - getTitleEndMargin();
+
+        final int collapsedWidth = containerWidth - collapsedTitleStartMargin
+                - getToolbarEndSpace();
+        if (maximumHeaderTextSize > 0 && collapsedWidth > 0) {
+            final float minimumScale = invisiblePlaceholderTextView.getHeight()
+                    / (float) maximumHeaderTextSize;
+            if (minimumScale > 0 && minimumScale < 1) {
+                width = Math.min(width, (int) (collapsedWidth / minimumScale));
+            }
+        }
+
+        width = Math.max(width, 0);
+        if (width != titleWidth) {
+            titleWidth = width;
+            largeTextView.setWidth(width);
+        }
+    }
+
+    private int getTitleEndMargin() {
+        final LayoutParams titleLayoutParams = (LayoutParams) largeTextView.getLayoutParams();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return titleLayoutParams.getMarginEnd();
+        } else {
+            return titleLayoutParams.rightMargin;
+        }
+    }
+
+    /**
+     * Get the space at the end of the toolbar that is taken up by its menu items.
+     */
+    private int getToolbarEndSpace() {
+        int space = actionBar.getContentInsetEnd();
+        for (int i = 0; i < actionBar.getChildCount(); i++) {
+            final View child = actionBar.getChildAt(i);
+            if (child instanceof ActionMenuView && child.getVisibility() != View.GONE) {
+                space = Math.max(space, isLayoutRtl() ? child.getRight() :
+                        actionBar.getWidth() - child.getLeft());
+            }
+        }
+        return space;
+    }
+
+    private boolean isLayoutRtl() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 &&
+                getLayoutDirection() == LAYOUT_DIRECTION_RTL;
     }
 
     /**
@@ -1413,6 +1979,7 @@ public class MultiShrinkScroller extends FrameLayout {
         }
 
         largeTextView.setLayoutParams(titleLayoutParams);
+        updateTitleWidth();
     }
 
     private void updatePhotoTintAndDropShadow() {
@@ -1451,9 +2018,45 @@ public class MultiShrinkScroller extends FrameLayout {
         // Tell the photo view what tint we are trying to achieve. Depending on the type of
         // drawable used, the photo view may or may not use this tint.
         photoView.setBackgroundColor(headerTintColor);
-        photoTouchInterceptOverlay.setBackgroundColor(ColorUtils.adjustAlpha(headerTintColor, colorAlpha));
-        titleGradientDrawable.setAlpha(gradientAlpha);
-        actionBarGradientDrawable.setAlpha(gradientAlpha);
+        photoTouchInterceptOverlay.setTintColor(
+                ColorUtils.adjustAlpha(headerTintColor, colorAlpha));
+        photoTouchInterceptOverlay.setGradientAlpha(gradientAlpha);
+
+        // Don't draw the layers underneath the tint when it covers them completely.
+        setPhotoCulled(colorAlpha >= 1 && Color.alpha(headerTintColor) == 0xFF);
+    }
+
+    /**
+     * Hide the photo and everything else underneath the tint while the tint is fully opaque, so
+     * they aren't drawn just to be painted over. Only the views that were visible get hidden,
+     * and only those are shown again afterwards.
+     */
+    private void setPhotoCulled(boolean culled) {
+        if (culled == isPhotoCulled) {
+            return;
+        }
+
+        isPhotoCulled = culled;
+        if (culled) {
+            cullIfVisible(photoView);
+            cullIfVisible(photoBackground);
+            cullIfVisible(headerContentContainer);
+        } else {
+            for (View view : culledPhotoViews) {
+                // Something else may have hidden it in the meantime, ie the reveal animation.
+                if (view.getVisibility() == View.INVISIBLE) {
+                    view.setVisibility(View.VISIBLE);
+                }
+            }
+            culledPhotoViews.clear();
+        }
+    }
+
+    private void cullIfVisible(View view) {
+        if (view != null && view.getVisibility() == View.VISIBLE) {
+            view.setVisibility(View.INVISIBLE);
+            culledPhotoViews.add(view);
+        }
     }
 
     private void updateLastEventPosition(MotionEvent event) {
@@ -1467,16 +2070,35 @@ public class MultiShrinkScroller extends FrameLayout {
     }
 
     private float updatePositionAndComputeDelta(MotionEvent event) {
+        // Walk through the batched samples as well as the latest one. The elasticity only
+        // applies to downward movement, so a batch that changes direction would otherwise be
+        // dampened incorrectly.
+        //
+        // These are the raw samples. Drags request unbuffered dispatch, which skips the
+        // framework's resampling to the frame time, so the content follows the latest sample
+        // rather than where the finger is estimated to be when the frame is drawn.
+        float delta = 0;
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            delta += computeDeltaTo(event.getHistoricalY(i));
+        }
+        delta += computeDeltaTo(event.getY());
+
+        updateLastEventPosition(event);
+        return delta;
+    }
+
+    private float computeDeltaTo(float y) {
         final int VERTICAL = 1;
         final float position = lastEventPosition[VERTICAL];
-        updateLastEventPosition(event);
+        lastEventPosition[VERTICAL] = y;
         float elasticityFactor = 1;
-        if (position < lastEventPosition[VERTICAL] && hasEverTouchedTheTop) {
+        if (position < y && hasEverTouchedTheTop) {
             // As QuickContacts is dragged from the top of the window, its rate of movement will
             // slow down in proportion to its distance from the top. This will feel springy.
             elasticityFactor += transparentView.getHeight() * SPRING_DAMPENING_FACTOR;
         }
-        return (position - lastEventPosition[VERTICAL]) / elasticityFactor;
+        return (position - y) / elasticityFactor;
     }
 
     private void smoothScrollBy(int delta) {
@@ -16,11 +16,22 @@
 
 package com.klinker.android.sliding;
 
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.view.View;
 import android.view.ViewTreeObserver.OnPreDrawListener;
 
 /**
  * Helper for scheduling events that will be occuring.
+ *
+ * Work can be scheduled in a few different phases of the first frames of a view:
+ *
+ * doOnPreDraw() - right before the next frame is drawn.
+ * doAfterFirstFrame() - once the next frame has been drawn.
+ * doOnIdle() - once the main thread has nothing else to do.
+ * doInChunks() - spread across as many frames as needed to stay within a time budget.
  */
 public class SchedulingUtils {
 
@@ -43,4 +54,92 @@ public class SchedulingUtils {
         view.getViewTreeObserver().addOnPreDrawListener(listener);
     }
 
+    /**
+     * Do an action after the next frame has been drawn, so that it doesn't delay that frame.
+     * @param view the view to be drawn.
+     * @param runnable the runnable to run.
+     */
+    public static void doAfterFirstFrame(final View view, final Runnable runnable) {
+        doOnPreDraw(view, true, new Runnable() {
+            @Override
+            public void run() {
+                // Anything posted during pre-draw will run once the current frame is finished.
+                view.post(runnable);
+            }
+        });
+    }
+
+    /**
+     * Do an action once the main thread is idle. This should only be used for work that is not
+     * needed for the activity to look correct.
+     * @param runnable the runnable to run.
+     */
+    public static void doOnIdle(final Runnable runnable) {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                runnable.run();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Run a list of actions, one frame at a time. As many actions as fit in the budget are run
+     * on each frame, but at least one is always run so that the work makes progress.
+     * @param view the view whose frames should be used.
+     * @param frameBudgetMs the time that may be spent on each frame, in milliseconds.
+     * @param runnables the runnables to run, in order.
+     */
+    public static void doInChunks(final View view, final long frameBudgetMs,
+                                  final Runnable... runnables) {
+        doInChunks(view, frameBudgetMs, runnables, null);
+    }
+
+    /**
+     * Run a list of actions, one frame at a time. As many actions as fit in the budget are run
+     * on each frame, but at least one is always run so that the work makes progress.
+     * @param view the view whose frames should be used.
+     * @param frameBudgetMs the time that may be spent on each frame, in milliseconds.
+     * @param runnables the runnables to run, in order.
+     * @param onComplete the runnable to run once all of the others have run, may be null.
+     */
+    public static void doInChunks(final View view, final long frameBudgetMs,
+                                  final Runnable[] runnables, final Runnable onComplete) {
+        final Runnable chunk = new Runnable() {
+            private int next = 0;
+
+            @Override
+            public void run() {
+                final long start = SystemClock.uptimeMillis();
+                do {
+                    runnables[next++].run();
+                } while (next < runnables.length
+                        && SystemClock.uptimeMillis() - start < frameBudgetMs);
+
+                if (next < runnables.length) {
+                    postOnNextFrame(view, this);
+                } else if (onComplete != null) {
+                    onComplete.run();
+                }
+            }
+        };
+
+        if (runnables.length == 0) {
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        } else {
+            postOnNextFrame(view, chunk);
+        }
+    }
+
+    private static void postOnNextFrame(View view, Runnable runnable) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            view.postOnAnimation(runnable);
+        } else {
+            view.post(runnable);
+        }
+    }
+
 }
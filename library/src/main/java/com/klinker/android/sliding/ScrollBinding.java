@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.graphics.Color;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+/**
+ * Binds a property of a view to how far the header has collapsed, using keyframes. For example,
+ * to fade out an avatar in the header content as it collapses:
+ *
+ * scroller.addScrollBinding(new ScrollBinding(avatar, ScrollBinding.PROPERTY_ALPHA)
+ *         .addKeyframe(0f, 1f)
+ *         .addKeyframe(0.5f, 0f));
+ *
+ * Bindings are evaluated by {@link MultiShrinkScroller} once per frame, right before drawing,
+ * whenever the scroll has changed. Apart from the background color, the properties only change
+ * how the view is drawn, so they never cause a layout. Nothing is allocated while evaluating.
+ */
+public class ScrollBinding {
+
+    public static final int PROPERTY_ALPHA = 0;
+    public static final int PROPERTY_TRANSLATION_X = 1;
+    public static final int PROPERTY_TRANSLATION_Y = 2;
+    public static final int PROPERTY_SCALE_X = 3;
+    public static final int PROPERTY_SCALE_Y = 4;
+    public static final int PROPERTY_ROTATION = 5;
+
+    /**
+     * The background color of the view. Keyframe values are ARGB colors, passed in with
+     * {@link #addColorKeyframe(float, int)}, and are interpolated channel by channel.
+     */
+    public static final int PROPERTY_BACKGROUND_COLOR = 6;
+
+    private final View view;
+    private final int property;
+    private Interpolator interpolator;
+    private float[] fractions = new float[2];
+    private float[] values = new float[2];
+    private int[] colors = new int[2];
+    private int keyframeCount;
+    private int lastColor;
+    private boolean hasAppliedColor;
+
+    /**
+     * Create a binding for one property of a view. Add at least one keyframe before adding it to
+     * the scroller.
+     * @param view the view to change.
+     * @param property one of the PROPERTY_ constants.
+     */
+    public ScrollBinding(View view, int property) {
+        if (property < PROPERTY_ALPHA || property > PROPERTY_BACKGROUND_COLOR) {
+            throw new IllegalArgumentException("Unknown property: " + property);
+        }
+
+        this.view = view;
+        this.property = property;
+    }
+
+    /**
+     * Add a keyframe. Keyframes can be added in any order. Before the first keyframe and after
+     * the last one, the value stays at that keyframe's value.
+     * @param collapseFraction the collapse fraction for this value, from 0 when the header is
+     *                         fully expanded to 1 when it is fully collapsed.
+     * @param value the value of the property at that point.
+     * @return this binding.
+     */
+    public ScrollBinding addKeyframe(float collapseFraction, float value) {
+        insertKeyframe(collapseFraction, value, 0);
+        return this;
+    }
+
+    /**
+     * Add a keyframe for {@link #PROPERTY_BACKGROUND_COLOR}.
+     * @param collapseFraction the collapse fraction for this color.
+     * @param color the ARGB color at that point.
+     * @return this binding.
+     */
+    public ScrollBinding addColorKeyframe(float collapseFraction, int color) {
+        insertKeyframe(collapseFraction, 0, color);
+        return this;
+    }
+
+    private void insertKeyframe(float collapseFraction, float value, int color) {
+        if (keyframeCount == fractions.length) {
+            final float[] newFractions = new float[keyframeCount * 2];
+            final float[] newValues = new float[keyframeCount * 2];
+            final int[] newColors = new int[keyframeCount * 2];
+            System.arraycopy(fractions, 0, newFractions, 0, keyframeCount);
+            System.arraycopy(values, 0, newValues, 0, keyframeCount);
+            System.arraycopy(colors, 0, newColors, 0, keyframeCount);
+            fractions = newFractions;
+            values = newValues;
+            colors = newColors;
+        }
+
+        // Keep the keyframes sorted, so that evaluating is a simple walk.
+        int index = keyframeCount;
+        while (index > 0 && fractions[index - 1] > collapseFraction) {
+            fractions[index] = fractions[index - 1];
+            values[index] = values[index - 1];
+            colors[index] = colors[index - 1];
+            index--;
+        }
+
+        fractions[index] = collapseFraction;
+        values[index] = value;
+        colors[index] = color;
+        keyframeCount++;
+    }
+
+    /**
+     * Set an interpolator that is applied to the collapse fraction before the keyframes are
+     * evaluated.
+     * @param interpolator the interpolator, or null to go linearly.
+     * @return this binding.
+     */
+    public ScrollBinding setInterpolator(Interpolator interpolator) {
+        this.interpolator = interpolator;
+        return this;
+    }
+
+    /**
+     * Get the view that this binding changes.
+     * @return the view.
+     */
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Update the property for the current collapse fraction.
+     * @param collapseFraction how far the header has collapsed, from 0 to 1.
+     */
+    void apply(float collapseFraction) {
+        if (keyframeCount == 0) {
+            return;
+        }
+
+        final float fraction = interpolator == null ? collapseFraction :
+                interpolator.getInterpolation(collapseFraction);
+
+        int end = 0;
+        while (end < keyframeCount && fractions[end] < fraction) {
+            end++;
+        }
+
+        final int start;
+        final float progress;
+        if (end == 0) {
+            start = 0;
+            progress = 0;
+        } else if (end == keyframeCount) {
+            start = end = keyframeCount - 1;
+            progress = 0;
+        } else {
+            start = end - 1;
+            final float range = fractions[end] - fractions[start];
+            progress = range == 0 ? 1 : (fraction - fractions[start]) / range;
+        }
+
+        if (property == PROPERTY_BACKGROUND_COLOR) {
+            final int color = interpolateColor(colors[start], colors[end], progress);
+            if (!hasAppliedColor || color != lastColor) {
+                hasAppliedColor = true;
+                lastColor = color;
+                view.setBackgroundColor(color);
+            }
+            return;
+        }
+
+        final float value = values[start] + (values[end] - values[start]) * progress;
+        switch (property) {
+            case PROPERTY_ALPHA:
+                view.setAlpha(value);
+                break;
+            case PROPERTY_TRANSLATION_X:
+                view.setTranslationX(value);
+                break;
+            case PROPERTY_TRANSLATION_Y:
+                view.setTranslationY(value);
+                break;
+            case PROPERTY_SCALE_X:
+                view.setScaleX(value);
+                break;
+            case PROPERTY_SCALE_Y:
+                view.setScaleY(value);
+                break;
+            case PROPERTY_ROTATION:
+                view.setRotation(value);
+                break;
+        }
+    }
+
+    private static int interpolateColor(int from, int to, float progress) {
+        return Color.argb(
+                (int) (Color.alpha(from) + (Color.alpha(to) - Color.alpha(from)) * progress),
+                (int) (Color.red(from) + (Color.red(to) - Color.red(from)) * progress),
+                (int) (Color.green(from) + (Color.green(to) - Color.green(from)) * progress),
+                (int) (Color.blue(from) + (Color.blue(to) - Color.blue(from)) * progress));
+    }
+
+}
@@ -20,32 +20,42 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ArgbEvaluator;
 import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.content.Intent;
-import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.graphics.Palette;
 import android.support.v7.widget.Toolbar;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewAnimationUtils;
-import android.view.animation.AnimationUtils;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.Interpolator;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.RelativeLayout;
 
 import com.klinker.android.peekview.PeekViewActivity;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Sliding activity that handles all interaction with users. It will be shown with about 150dp of
  * space at the top when initially launched and you can then scroll up the activity and close this
@@ -61,15 +71,21 @@ import com.klinker.android.peekview.PeekViewActivity;
  * setFab()
  * disableHeader()
  * enableFullscreen()
+ * enableOpaqueWhenFullscreen()
  *
  * You may use any combination of these to achieve the desired look.
  */
 public abstract class SlidingActivity extends PeekViewActivity {
 
+    private static final String TAG = "SlidingActivity";
+
     private static final int ANIMATION_STATUS_BAR_COLOR_CHANGE_DURATION = 150;
     private static final int SCRIM_COLOR = Color.argb(0xC8, 0, 0, 0);
     private static final int DEFAULT_PRIMARY_COLOR = 0xff607D8B;
     private static final int DEFAULT_PRIMARY_DARK_COLOR = 0xff37474F;
+    private static final long DEFAULT_ENTRANCE_DEADLINE_MS = 80;
+    private static final long STAGED_CONTENT_FRAME_BUDGET_MS = 8;
+    private static final int TRIMMED_HEADER_SCALE = 8;
 
     private int statusBarColor;
     private boolean hasAlreadyBeenOpened;
@@ -82,10 +98,39 @@ public abstract class SlidingActivity extends PeekViewActivity {
     private boolean isEntranceAnimationFinished;
     private boolean isExitAnimationInProgress;
     private boolean isExitAnimationFinished;
+    private boolean isDismissCommitted;
     private boolean isStarting;
     private boolean startFullscreen = false;
+    private boolean opaqueWhenFullscreen = false;
+    private boolean isWindowOpaque;
+    private boolean isDragging;
+    private boolean isScrollOffBottomPending;
     private MultiShrinkScroller.OpenAnimation openAnimation = MultiShrinkScroller.OpenAnimation.SLIDE_UP;
     private FrameLayout headerContent;
+    private int themeResId;
+    private boolean hasHandoffHeaderImage;
+    private ImageView sourceSnapshotView;
+    private Bitmap headerBitmap;
+    private int headerImageResId;
+    private SoftReference<Bitmap> trimmedHeaderBitmap;
+    private Executor backgroundExecutor;
+    private Executor mainExecutor;
+    private volatile boolean areBackgroundTasksCancelled;
+    private final AtomicInteger pendingBackgroundTasks = new AtomicInteger();
+    private final EntranceGate entranceGate = new EntranceGate();
+    private long entranceDeadlineMs = DEFAULT_ENTRANCE_DEADLINE_MS;
+    private boolean stagedContentAttach = false;
+    private final List<View> stagedContent = new ArrayList<View>();
+
+    /**
+     * Callback for receiving the result of work started with
+     * {@link #runInBackground(Callable, BackgroundResultCallback)}.
+     */
+    public interface BackgroundResultCallback<T> {
+
+        void onResult(T result);
+
+    }
 
     /**
      * Set up all relevant data for the activity including scrollers, etc. This is a final method,
@@ -103,7 +148,12 @@ public abstract class SlidingActivity extends PeekViewActivity {
             getWindow().setStatusBarColor(Color.TRANSPARENT);
         }
 
-        setContentView(R.layout.sliding_activity);
+        final View pooledHierarchy = SlidingViewPool.acquire(this, themeResId);
+        if (pooledHierarchy != null) {
+            setContentView(pooledHierarchy);
+        } else {
+            setContentView(R.layout.sliding_activity);
+        }
 
         scroller = (MultiShrinkScroller) findViewById(R.id.multiscroller);
         content = (FrameLayout) findViewById(R.id.content_container);
@@ -116,13 +166,20 @@ public abstract class SlidingActivity extends PeekViewActivity {
             transparentView.setOnClickListener(new OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    scroller.scrollOffBottom();
+                    scrollOffBottom();
                 }
             });
         }
 
-        // Allow a shadow to be shown under the toolbar.
-        ViewUtil.addRectangularOutlineProvider(findViewById(R.id.toolbar_parent), getResources());
+        // Allow a shadow to be shown under the toolbar. The shadow is only visible once the
+        // header has been collapsed, so this doesn't need to hold up the first frame.
+        SchedulingUtils.doAfterFirstFrame(scroller, new Runnable() {
+            @Override
+            public void run() {
+                ViewUtil.addRectangularOutlineProvider(findViewById(R.id.toolbar_parent),
+                        getResources());
+            }
+        });
 
         final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -150,37 +207,37 @@ public abstract class SlidingActivity extends PeekViewActivity {
                 new Runnable() {
                     @Override
                     public void run() {
-                        // The initial scrim opacity must match the scrim opacity that would be
-                        // achieved by scrolling to the starting position.
-                        final float alphaRatio = scroller.getStartingTransparentHeightRatio();
-                        final int duration = getResources().getInteger(
-                                android.R.integer.config_shortAnimTime);
-                        final int desiredAlpha = (int) (0xFF * alphaRatio);
-                        ObjectAnimator o = ObjectAnimator.ofInt(windowScrim, "alpha", 0,
-                                desiredAlpha).setDuration(duration);
-
-                        o.start();
+                        SlidingUtils.animateScrimIn(scroller, windowScrim);
                     }
                 });
 
+        // If the launching activity handed us the header bitmap, use it right away. init() can
+        // check hasHandoffHeaderImage() to skip loading the header itself.
+        final Bitmap handoffBitmap = BitmapHandoff.takeHeaderBitmap(getIntent());
+        if (handoffBitmap != null) {
+            hasHandoffHeaderImage = true;
+            setImage(handoffBitmap);
+        }
+
         init(savedInstanceState);
         showActivity();
 
-        // when we have a phone in landscape and a two column layout, we don't want the padded
-        // edges on the side of it, so we set them to gone
-        if (!disabledHeader && getResources().getBoolean(R.bool.full_screen_with_header)) {
-            View emptyStart = findViewById(R.id.empty_start_column);
-            View emptyEnd = findViewById(R.id.empty_end_column);
-
-            if (emptyStart != null && emptyEnd != null) {
-                emptyStart.setVisibility(View.GONE);
-                emptyEnd.setVisibility(View.GONE);
-            }
-        }
+        SlidingUtils.hideEmptyColumns(scroller, disabledHeader);
 
         isStarting = false;
     }
 
+    /**
+     * Keep track of the theme, so that we can find a matching hierarchy in the
+     * {@link SlidingViewPool}.
+     * @param resId the theme res id.
+     */
+    @Override
+    public void setTheme(int resId) {
+        super.setTheme(resId);
+        themeResId = resId;
+    }
+
     /**
      * Initialize all of your data here, as you would with onCreate() normally.
      * @param savedInstanceState the saved instance state.
@@ -232,21 +289,8 @@ public abstract class SlidingActivity extends PeekViewActivity {
      * @param onClickListener the listener to activate when clicked on.
      */
     public void setFab(int color, int drawableRes, OnClickListener onClickListener) {
-        fab.setBackgroundTintList(
-                new ColorStateList(
-                        new int[][] {
-                                new int[] {}
-                        },
-                        new int[] {
-                                color
-                        }
-                )
-        );
-
-        fab.setImageDrawable(getResources().getDrawable(drawableRes));
-        fab.setOnClickListener(onClickListener);
-
-        scroller.setEnableFab(true);
+        SlidingUtils.setFab(scroller, fab, color, getResources().getDrawable(drawableRes),
+                onClickListener);
     }
 
     /**
@@ -266,10 +310,126 @@ public abstract class SlidingActivity extends PeekViewActivity {
 
     /**
      * Set the content to be displayed in the scrolling area.
+     *
+     * If staged content attach has been enabled, the view is not attached until the entrance
+     * animation has finished, and its children are added back over the frames after that. Look
+     * up its children through the view itself, right after calling this, rather than through
+     * findViewById() on the activity.
+     *
      * @param view the view to use for the content.
      */
     public void setContent(View view) {
-        content.addView(view);
+        if (stagedContentAttach && !isEntranceAnimationFinished) {
+            stagedContent.add(view);
+        } else {
+            content.addView(view);
+        }
+    }
+
+    /**
+     * Run the entrance animation with only the header and an empty content area, and attach the
+     * content once the animation has finished. Each content view is attached as an empty shell
+     * first, and if it is a plain LinearLayout, FrameLayout or RelativeLayout, its children are
+     * then added back a few at a time, measured and laid out within a small budget each frame.
+     * This keeps the animation and the frames after it smooth for large content layouts. This
+     * needs to be called in init(), before setContent().
+     */
+    public void enableStagedContentAttach() {
+        stagedContentAttach = true;
+    }
+
+    /**
+     * Attach any content that was held back during the entrance animation, spread across frames.
+     */
+    private void attachStagedContent() {
+        if (stagedContent.isEmpty()) {
+            return;
+        }
+
+        final List<Runnable> attaches = new ArrayList<Runnable>();
+        for (final View view : stagedContent) {
+            final ViewGroup parent = findStagedParent(view);
+            final View[] children;
+            if (parent == null) {
+                children = new View[0];
+            } else {
+                children = new View[parent.getChildCount()];
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = parent.getChildAt(i);
+                }
+                parent.removeAllViews();
+            }
+
+            attaches.add(new Runnable() {
+                @Override
+                public void run() {
+                    view.setAlpha(0f);
+                    content.addView(view);
+                    view.animate()
+                            .alpha(1f)
+                            .start();
+                    layoutStagedContent();
+                }
+            });
+
+            for (final View child : children) {
+                attaches.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        parent.addView(child);
+                        layoutStagedContent();
+                    }
+                });
+            }
+        }
+        stagedContent.clear();
+
+        SchedulingUtils.doInChunks(content, STAGED_CONTENT_FRAME_BUDGET_MS,
+                attaches.toArray(new Runnable[attaches.size()]));
+    }
+
+    /**
+     * Find the view group whose children should be attached one at a time. Wrappers with a single
+     * child are skipped, so that content inside a lone container is still spread out. Only the
+     * framework's plain layouts are split, since other view groups, like lists, manage their own
+     * children.
+     * @param view the staged content view.
+     * @return the view group to split up, or null if the view should be attached in one go.
+     */
+    private static ViewGroup findStagedParent(View view) {
+        while (isPlainLayout(view)) {
+            final ViewGroup group = (ViewGroup) view;
+            if (group.getChildCount() != 1 || !isPlainLayout(group.getChildAt(0))) {
+                return group.getChildCount() > 0 ? group : null;
+            }
+            view = group.getChildAt(0);
+        }
+
+        return null;
+    }
+
+    private static boolean isPlainLayout(View view) {
+        final Class<?> type = view.getClass();
+        return type == LinearLayout.class || type == FrameLayout.class
+                || type == RelativeLayout.class;
+    }
+
+    /**
+     * Measure and lay out the content scroller at its current size right away, so that the cost
+     * of what was just attached counts against the chunk's frame budget instead of piling up in
+     * the next traversal, which then finds the measurements cached.
+     */
+    private void layoutStagedContent() {
+        final View scroller = (View) content.getParent();
+        if (scroller.getWidth() == 0 || scroller.getHeight() == 0) {
+            return;
+        }
+
+        scroller.measure(
+                View.MeasureSpec.makeMeasureSpec(scroller.getWidth(), View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(scroller.getHeight(), View.MeasureSpec.EXACTLY));
+        scroller.layout(scroller.getLeft(), scroller.getTop(),
+                scroller.getRight(), scroller.getBottom());
     }
 
     /**
@@ -293,7 +453,46 @@ public abstract class SlidingActivity extends PeekViewActivity {
      * @param resId the resource id to use for the bitmap to be created for the header.
      */
     public void setImage(int resId) {
-        setImage(BitmapFactory.decodeResource(getResources(), resId));
+        HeaderImageCache.Entry entry = HeaderImageCache.take(getResources(), resId);
+        if (entry == null) {
+            if (!isStarting) {
+                // Palette won't be used, so don't bother extracting the colors.
+                setImage(BitmapFactory.decodeResource(getResources(), resId));
+                headerImageResId = resId;
+                return;
+            }
+
+            entry = HeaderImageCache.decode(getResources(), resId);
+            if (entry == null) {
+                return;
+            }
+        }
+
+        setImage(entry.bitmap, entry.primaryColor, entry.primaryColorDark);
+        headerImageResId = resId;
+    }
+
+    /**
+     * Check whether the header image was handed over by the launching activity through
+     * {@link BitmapHandoff}, in which case it has already been set.
+     * @return true if the header image is already set.
+     */
+    public boolean hasHandoffHeaderImage() {
+        return hasHandoffHeaderImage;
+    }
+
+    /**
+     * Start decoding a header image and extracting its colors in the background, before the
+     * sliding activity that will display it is started. Call this from the launching activity as
+     * early as you know what will be opened, ie when the item is pressed down. Once the sliding
+     * activity calls {@link #setImage(int)} with the same resource, the work will already be
+     * done, as long as the configuration hasn't changed in between. The image is handed over to
+     * that one call and isn't kept any longer. This must be called on the main thread.
+     * @param context the launching activity.
+     * @param imageResId the drawable resource that will be passed to setImage().
+     */
+    public static void prewarm(Context context, int imageResId) {
+        HeaderImageCache.prewarm(context, imageResId);
     }
 
     /**
@@ -314,12 +513,34 @@ public abstract class SlidingActivity extends PeekViewActivity {
      * @param bitmap the bitmap to use for the animation.
      */
     public void setImage(Bitmap bitmap) {
-        photoView.setImageBitmap(bitmap);
-
         if (isStarting) {
             Palette palette = Palette.from(bitmap).generate();
-            setPrimaryColors(palette.getVibrantColor(DEFAULT_PRIMARY_COLOR),
+            setImage(bitmap, palette.getVibrantColor(DEFAULT_PRIMARY_COLOR),
                     palette.getDarkVibrantColor(DEFAULT_PRIMARY_DARK_COLOR));
+        } else {
+            setImage(bitmap, DEFAULT_PRIMARY_COLOR, DEFAULT_PRIMARY_DARK_COLOR);
+        }
+    }
+
+    /**
+     * Set the image to be displayed in the header, when its colors are already known.
+     * @param bitmap the bitmap to use for the animation.
+     * @param primaryColor the color to use if the activity is still starting.
+     * @param primaryColorDark the dark color to use if the activity is still starting.
+     */
+    private void setImage(Bitmap bitmap, int primaryColor, int primaryColorDark) {
+        photoView.setImageBitmap(bitmap);
+        headerBitmap = bitmap;
+        headerImageResId = 0;
+        trimmedHeaderBitmap = null;
+
+        if (SlidingDebug.isEnabled() && bitmap != null) {
+            SlidingDebug.checkHeaderBitmap(bitmap, photoView.getWidth() > 0 ?
+                    photoView.getWidth() : getResources().getDisplayMetrics().widthPixels);
+        }
+
+        if (isStarting) {
+            setPrimaryColors(primaryColor, primaryColorDark);
         } else {
             photoViewTempBackground.setBackgroundDrawable(photoView.getBackground());
             photoViewTempBackground.setVisibility(View.VISIBLE);
@@ -357,6 +578,90 @@ public abstract class SlidingActivity extends PeekViewActivity {
         }
     }
 
+    /**
+     * Shed memory while the activity is in the background. The full size header image is swapped
+     * for a small placeholder, which keeps the colors, and is only softly referenced until the
+     * activity comes back. Prewarmed header images that were never shown are dropped once memory
+     * is actually low.
+     * @param level the memory trim level.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        HeaderImageCache.trimMemory(level);
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            trimHeaderImage();
+        }
+    }
+
+    /**
+     * Put the full size header image back if it was swapped out by onTrimMemory().
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        restoreHeaderImage();
+    }
+
+    /**
+     * Called when the header image was released while the activity was in the background and
+     * it can't be restored automatically, since it wasn't set from a resource. A small
+     * placeholder version of the image is showing. Override this and call setImage() again to
+     * restore it.
+     */
+    protected void onRestoreHeaderImage() {
+
+    }
+
+    private void trimHeaderImage() {
+        if (headerBitmap == null || headerBitmap.isRecycled()) {
+            return;
+        }
+
+        final Bitmap placeholder = Bitmap.createScaledBitmap(headerBitmap,
+                Math.max(1, headerBitmap.getWidth() / TRIMMED_HEADER_SCALE),
+                Math.max(1, headerBitmap.getHeight() / TRIMMED_HEADER_SCALE), true);
+        photoView.setImageBitmap(placeholder);
+
+        // It will still be there when we come back unless the memory was actually needed.
+        trimmedHeaderBitmap = new SoftReference<Bitmap>(headerBitmap);
+        headerBitmap = null;
+    }
+
+    private void restoreHeaderImage() {
+        if (trimmedHeaderBitmap == null) {
+            return;
+        }
+
+        final Bitmap bitmap = trimmedHeaderBitmap.get();
+        trimmedHeaderBitmap = null;
+
+        if (bitmap != null && !bitmap.isRecycled()) {
+            headerBitmap = bitmap;
+            photoView.setImageBitmap(bitmap);
+        } else if (headerImageResId != 0) {
+            final int resId = headerImageResId;
+            runInBackground(new Callable<HeaderImageCache.Entry>() {
+                @Override
+                public HeaderImageCache.Entry call() {
+                    return HeaderImageCache.decode(getResources(), resId);
+                }
+            }, new BackgroundResultCallback<HeaderImageCache.Entry>() {
+                @Override
+                public void onResult(HeaderImageCache.Entry result) {
+                    // Don't replace an image that was set in the meantime.
+                    if (result != null && headerImageResId == resId && headerBitmap == null) {
+                        headerBitmap = result.bitmap;
+                        photoView.setImageBitmap(result.bitmap);
+                    }
+                }
+            });
+        } else {
+            onRestoreHeaderImage();
+        }
+    }
+
     private boolean disabledHeader = false;
 
     /**
@@ -378,6 +683,74 @@ public abstract class SlidingActivity extends PeekViewActivity {
     public void expandFromPoints(int leftOffset, int topOffset, int viewWidth, int viewHeight) {
         openAnimation = MultiShrinkScroller.OpenAnimation.EXPAND_FROM_VIEW;
         scroller.setExpansionPoints(leftOffset, topOffset, viewWidth, viewHeight);
+
+        // If the launching activity passed a snapshot of the view we are expanding from, draw it
+        // over the spot that view was in, so the first frame already looks like it. The scroller
+        // is kept invisible until the entrance animation starts, so the snapshot goes into the
+        // window content on top of it, rather than into the scroller.
+        final Bitmap snapshot = BitmapHandoff.takeSourceSnapshot(getIntent());
+        if (snapshot != null && sourceSnapshotView == null) {
+            sourceSnapshotView = new ImageView(this);
+            sourceSnapshotView.setScaleType(ImageView.ScaleType.FIT_XY);
+            sourceSnapshotView.setImageBitmap(snapshot);
+            sourceSnapshotView.setPivotX(0);
+            sourceSnapshotView.setPivotY(0);
+            sourceSnapshotView.setTranslationX(leftOffset);
+            sourceSnapshotView.setTranslationY(topOffset);
+            ((ViewGroup) findViewById(android.R.id.content)).addView(sourceSnapshotView,
+                    new FrameLayout.LayoutParams(viewWidth, viewHeight));
+        }
+    }
+
+    /**
+     * Fade out the source view snapshot while the expansion runs, keeping it over the expanding
+     * scroller, then get rid of it.
+     */
+    private void crossFadeSourceSnapshot() {
+        if (sourceSnapshotView == null) {
+            return;
+        }
+
+        final ImageView snapshotView = sourceSnapshotView;
+        sourceSnapshotView = null;
+
+        final ViewTreeObserver.OnPreDrawListener tracker =
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        // Scale rather than resize the snapshot, so it doesn't need a layout.
+                        if (snapshotView.getWidth() > 0 && snapshotView.getHeight() > 0) {
+                            snapshotView.setTranslationX(
+                                    scroller.getLeft() + scroller.getTranslationX());
+                            snapshotView.setTranslationY(
+                                    scroller.getTop() + scroller.getTranslationY());
+                            snapshotView.setScaleX(
+                                    scroller.getWidth() / (float) snapshotView.getWidth());
+                            snapshotView.setScaleY(
+                                    scroller.getHeight() / (float) snapshotView.getHeight());
+                        }
+                        return true;
+                    }
+                };
+        snapshotView.getViewTreeObserver().addOnPreDrawListener(tracker);
+
+        snapshotView.animate()
+                .alpha(0f)
+                .setDuration(MultiShrinkScroller.ANIMATION_DURATION)
+                .setListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        final ViewTreeObserver observer = snapshotView.getViewTreeObserver();
+                        if (observer.isAlive()) {
+                            observer.removeOnPreDrawListener(tracker);
+                        }
+                        if (snapshotView.getParent() != null) {
+                            ((ViewGroup) snapshotView.getParent()).removeView(snapshotView);
+                        }
+                        snapshotView.setImageDrawable(null);
+                    }
+                })
+                .start();
     }
 
     /**
@@ -388,6 +761,106 @@ public abstract class SlidingActivity extends PeekViewActivity {
         startFullscreen = true;
     }
 
+    /**
+     * Make the window opaque while the activity is scrolled up to fullscreen, so that the system
+     * stops compositing the activity underneath it on every frame. It is made translucent again
+     * as soon as the user starts dragging it, or it is dismissed, and it won't scroll down past
+     * the top of the screen until the activity underneath has drawn. Only has an effect on
+     * Lollipop and up.
+     *
+     * Note that the activity underneath will be stopped while this one is opaque, and restarted
+     * when it becomes translucent again.
+     */
+    public void enableOpaqueWhenFullscreen() {
+        opaqueWhenFullscreen = true;
+    }
+
+    /**
+     * Convert the window. While it is opaque, the scroller keeps the gap above the content
+     * closed. Converting back to translucent takes a moment, since the activity underneath has to
+     * draw first, and the gap stays closed until it has.
+     */
+    private void setWindowOpaque(boolean opaque) {
+        if (isWindowOpaque == opaque ||
+                (opaque && (!opaqueWhenFullscreen || !WindowTranslucency.isSupported()))) {
+            return;
+        }
+
+        if (opaque) {
+            if (WindowTranslucency.convertToOpaque(this)) {
+                isWindowOpaque = true;
+                scroller.holdFullscreen(true);
+            }
+        } else {
+            isWindowOpaque = false;
+            if (!WindowTranslucency.convertToTranslucent(this, onWindowTranslucent)) {
+                // The window can't be made translucent again, so don't make it opaque anymore
+                // either. Showing the gap is better than not being able to dismiss at all.
+                opaqueWhenFullscreen = false;
+                onWindowTranslucent.run();
+            }
+        }
+    }
+
+    private final Runnable onWindowTranslucent = new Runnable() {
+        @Override
+        public void run() {
+            if (isWindowOpaque) {
+                // It was made opaque again in the meantime.
+                return;
+            }
+
+            scroller.holdFullscreen(false);
+            if (isScrollOffBottomPending) {
+                isScrollOffBottomPending = false;
+                scroller.scrollOffBottom();
+            }
+        }
+    };
+
+    /**
+     * Animate the activity off of the screen, once the window is translucent.
+     */
+    private void scrollOffBottom() {
+        if (isWindowOpaque) {
+            isScrollOffBottomPending = true;
+            setWindowOpaque(false);
+        } else if (!isScrollOffBottomPending) {
+            scroller.scrollOffBottom();
+        }
+    }
+
+    /**
+     * Hold the entrance animation until something it should show is ready, for example a header
+     * image that is loaded in the background. Call this in init() and call
+     * {@link EntranceGate.Ticket#ready()} once the asset has been set. The animation will never
+     * wait longer than the deadline set with {@link #setEntranceDeadline(long)}.
+     * @return the ticket to mark as ready.
+     */
+    public EntranceGate.Ticket holdEntranceAnimation() {
+        return entranceGate.hold();
+    }
+
+    /**
+     * Set the longest amount of time that the entrance animation will wait for the things that
+     * are holding it. Defaults to 80 ms.
+     * @param deadlineMs the deadline in milliseconds.
+     */
+    public void setEntranceDeadline(long deadlineMs) {
+        this.entranceDeadlineMs = deadlineMs;
+    }
+
+    /**
+     * Called when the entrance animation is about to start, after waiting on anything that was
+     * holding it with {@link #holdEntranceAnimation()}. Override this to report how long the
+     * entrance was delayed.
+     * @param waitedMs how long the animation waited, in milliseconds.
+     * @param timedOut true if the deadline passed before everything was ready.
+     */
+    protected void onEntranceReady(long waitedMs, boolean timedOut) {
+
+    }
+
     @Override
     protected void onNewIntent(Intent intent) {
         super.onNewIntent(intent);
@@ -403,19 +876,9 @@ public abstract class SlidingActivity extends PeekViewActivity {
         hasAlreadyBeenOpened = true;
 
         if (openAnimation == MultiShrinkScroller.OpenAnimation.EXPAND_FROM_VIEW) {
-            // hide the content and show it in a bit, much smoother animation
-
+            // hide the content and show it once the expansion is done, much smoother animation
             content.setVisibility(View.GONE);
-            new Handler().postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    content.setVisibility(View.VISIBLE);
-                    content.setAlpha(0f);
-                    content.animate()
-                            .alpha(1f)
-                            .start();
-                }
-            }, MultiShrinkScroller.ANIMATION_DURATION);
+            crossFadeSourceSnapshot();
         }
 
         boolean openToCurrentPosition =  getResources().getConfiguration().orientation != Configuration.ORIENTATION_LANDSCAPE &&
@@ -444,12 +907,39 @@ public abstract class SlidingActivity extends PeekViewActivity {
                     new Runnable() {
                         @Override
                         public void run() {
-                            runEntranceAnimation();
+                            if (hasAlreadyBeenOpened || entranceGate.isReady()) {
+                                runEntranceAnimation();
+                            } else {
+                                waitForEntranceGate();
+                            }
                         }
                     });
         }
     }
 
+    /**
+     * Keep the scroller hidden until everything holding the entrance is ready, or the deadline
+     * passes, and then run the animation on the next frame.
+     */
+    private void waitForEntranceGate() {
+        scroller.setVisibility(View.INVISIBLE);
+        entranceGate.await(entranceDeadlineMs, new EntranceGate.OnOpenListener() {
+            @Override
+            public void onOpen(long waitedMs, boolean timedOut) {
+                onEntranceReady(waitedMs, timedOut);
+
+                scroller.setVisibility(View.VISIBLE);
+                SchedulingUtils.doOnPreDraw(scroller, /* drawNextFrame = */ false,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                runEntranceAnimation();
+                            }
+                        });
+            }
+        });
+    }
+
     private void setThemeColor(int primaryColor, int primaryColorDark) {
         scroller.setHeaderTintColor(primaryColor);
         statusBarColor = primaryColorDark;
@@ -478,13 +968,159 @@ public abstract class SlidingActivity extends PeekViewActivity {
         }
     }
 
+    /**
+     * Set the executors that this activity should use, instead of the process wide ones from
+     * {@link SlidingExecutors}. Pass null for either to use the process wide one.
+     * @param background the executor to run background work on.
+     * @param main the executor that delivers results on the main thread.
+     */
+    public void setExecutors(Executor background, Executor main) {
+        this.backgroundExecutor = background;
+        this.mainExecutor = main;
+    }
+
+    /**
+     * Run some work on the background executor and deliver the result on the main thread. If
+     * the activity is destroyed before the result arrives, the callback will never be called,
+     * so it is safe to touch views from it.
+     * @param work the work to run in the background.
+     * @param callback the callback to deliver the result to, may be null.
+     */
+    public <T> void runInBackground(final Callable<T> work,
+                                    final BackgroundResultCallback<T> callback) {
+        final Executor background = backgroundExecutor != null ?
+                backgroundExecutor : SlidingExecutors.getBackgroundExecutor();
+        final Executor main = mainExecutor != null ?
+                mainExecutor : SlidingExecutors.getMainExecutor();
+
+        pendingBackgroundTasks.incrementAndGet();
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (areBackgroundTasksCancelled) {
+                    pendingBackgroundTasks.decrementAndGet();
+                    return;
+                }
+
+                final T result;
+                try {
+                    result = work.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "background work failed", e);
+                    pendingBackgroundTasks.decrementAndGet();
+                    return;
+                }
+
+                main.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        pendingBackgroundTasks.decrementAndGet();
+                        if (!areBackgroundTasksCancelled && callback != null) {
+                            callback.onResult(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called once the activity is certain to be dismissed, as the exit animation starts. Override
+     * this to stop loading anything immediately, instead of waiting for onDestroy(), which only
+     * comes after the animation and the window have finished. Background work started with
+     * {@link #runInBackground(Callable, BackgroundResultCallback)} has already been cancelled.
+     */
+    protected void onDismissCommitted() {
+
+    }
+
+    private void commitDismiss() {
+        if (isDismissCommitted) {
+            return;
+        }
+
+        isDismissCommitted = true;
+        entranceGate.cancel();
+        cancelBackgroundTasks();
+        stagedContent.clear();
+        onDismissCommitted();
+    }
+
+    /**
+     * Let go of the header image and the content once they are off of the screen, so that they
+     * can be collected while the next screen is starting, rather than after onDestroy().
+     */
+    private void releaseDismissedViews() {
+        photoView.animate().cancel();
+        photoView.setImageDrawable(null);
+        headerBitmap = null;
+        trimmedHeaderBitmap = null;
+        photoViewTempBackground.setBackgroundDrawable(null);
+        content.animate().cancel();
+        content.removeAllViews();
+        headerContent.removeAllViews();
+    }
+
+    /**
+     * Stop delivering the results of any background work. Work that hasn't started yet will be
+     * skipped. This is done automatically when the activity is destroyed.
+     */
+    protected void cancelBackgroundTasks() {
+        areBackgroundTasksCancelled = true;
+    }
+
+    @Override
+    protected void onDestroy() {
+        entranceGate.cancel();
+        cancelBackgroundTasks();
+
+        if (SlidingDebug.isEnabled()) {
+            Log.d(TAG, this + " destroyed holding " + getMemoryReport());
+            SlidingDebug.watchForLeak(this, toString());
+        }
+
+        super.onDestroy();
+    }
+
+    /**
+     * Count up the memory held by this screen, see {@link SlidingDebug#getReport(SlidingActivity)}.
+     */
+    SlidingDebug.MemoryReport getMemoryReport() {
+        final Drawable drawable = photoView == null ? null : photoView.getDrawable();
+        final Bitmap displayed = drawable instanceof BitmapDrawable ?
+                ((BitmapDrawable) drawable).getBitmap() : null;
+        final Bitmap trimmed = trimmedHeaderBitmap == null ? null : trimmedHeaderBitmap.get();
+
+        int headerBytes = getByteCount(displayed);
+        if (headerBitmap != displayed) {
+            headerBytes += getByteCount(headerBitmap);
+        }
+        if (trimmed != displayed && trimmed != headerBitmap) {
+            headerBytes += getByteCount(trimmed);
+        }
+
+        int liveAnimators = 0;
+        int pendingCallbacks = pendingBackgroundTasks.get() + entranceGate.getPendingTicketCount();
+        if (scroller != null) {
+            liveAnimators = scroller.getLiveAnimatorCount();
+            pendingCallbacks += scroller.getPendingCallbackCount();
+        }
+
+        return new SlidingDebug.MemoryReport(headerBytes, SlidingDebug.countViews(scroller),
+                liveAnimators, pendingCallbacks);
+    }
+
+    private static int getByteCount(Bitmap bitmap) {
+        return bitmap == null || bitmap.isRecycled() ? 0 : bitmap.getByteCount();
+    }
+
     /**
      * Handle the back button being pressed, dismiss the activity.
      */
     @Override
     public void onBackPressed() {
         if (scroller != null && !isExitAnimationInProgress) {
-            scroller.scrollOffBottom();
+            scrollOffBottom();
         } else {
             super.onBackPressed();
         }
@@ -497,7 +1133,7 @@ public abstract class SlidingActivity extends PeekViewActivity {
     @Override
     public void finish() {
         if (scroller != null && !isExitAnimationFinished) {
-            scroller.scrollOffBottom();
+            scrollOffBottom();
         } else {
             super.finish();
             overridePendingTransition(0, 0);
@@ -512,17 +1148,12 @@ public abstract class SlidingActivity extends PeekViewActivity {
     }
 
     /**
-     * Add an overlay to preview photo view with alpha.
+     * Add an overlay to preview photo view with alpha. Calling this again replaces the overlay.
      *
      * @param alpha The aplha value of the view
      */
     public void setImageOverlay(float alpha) {
-        View view = new View(this);
-        FrameLayout.LayoutParams layoutParams = new FrameLayout.LayoutParams(photoView.getLayoutParams());
-        view.setLayoutParams(layoutParams);
-        view.setBackgroundColor(Color.BLACK);
-        view.setAlpha(alpha);
-        ((FrameLayout) findViewById(R.id.toolbar_parent)).addView(view);
+        scroller.setHeaderDimAlpha(alpha);
     }
 
     /**
@@ -546,58 +1177,110 @@ public abstract class SlidingActivity extends PeekViewActivity {
         }
     }
 
+    /**
+     * Add a listener that is called once per frame with the scroll progress, ie to drive your
+     * own scroll linked effects or to pause image loading during flings.
+     *
+     * @param listener the listener
+     */
+    public void addOnScrollProgressListener(MultiShrinkScroller.OnScrollProgressListener listener) {
+        scroller.addOnScrollProgressListener(listener);
+    }
+
+    /**
+     * Remove a scroll progress listener.
+     *
+     * @param listener the listener
+     */
+    public void removeOnScrollProgressListener(
+            MultiShrinkScroller.OnScrollProgressListener listener) {
+        scroller.removeOnScrollProgressListener(listener);
+    }
+
+    /**
+     * Bind a property of a view, ie in the header content, to how far the header has collapsed.
+     *
+     * @param binding the binding
+     */
+    public void addScrollBinding(ScrollBinding binding) {
+        scroller.addScrollBinding(binding);
+    }
+
+    /**
+     * Remove a scroll binding.
+     *
+     * @param binding the binding
+     */
+    public void removeScrollBinding(ScrollBinding binding) {
+        scroller.removeScrollBinding(binding);
+    }
+
     private final MultiShrinkScroller.MultiShrinkScrollerListener multiShrinkScrollerListener
             = new MultiShrinkScroller.MultiShrinkScrollerListener() {
         @Override
         public void onScrolledOffBottom() {
             isExitAnimationFinished = true;
+            commitDismiss();
+            releaseDismissedViews();
             finish();
         }
 
         @Override
         public void onEnterFullscreen() {
             updateStatusBarColor();
+
+            // While dragging, the finger could turn around and reveal the gap at any moment.
+            if (isEntranceAnimationFinished && !isExitAnimationInProgress && !isDragging) {
+                setWindowOpaque(true);
+            }
         }
 
         @Override
         public void onExitFullscreen() {
             updateStatusBarColor();
+            setWindowOpaque(false);
+        }
+
+        @Override
+        public void onStartDrag() {
+            // Start converting right away, so that the window is translucent by the time the
+            // drag reaches the gap. The scroller doesn't reveal it until then.
+            isDragging = true;
+            setWindowOpaque(false);
+        }
+
+        @Override
+        public void onStopDrag() {
+            isDragging = false;
+            if (isEntranceAnimationFinished && !isExitAnimationInProgress &&
+                    scroller.getScrollNeededToBeFullScreen() <= 0) {
+                setWindowOpaque(true);
+            }
         }
 
         @Override
         public void onStartScrollOffBottom() {
             isExitAnimationInProgress = true;
+            commitDismiss();
+            setWindowOpaque(false);
 
             if (scroller.willUseReverseExpansion()) {
                 content.removeAllViews();
-
-                final Interpolator interpolator;
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    interpolator = AnimationUtils.loadInterpolator(SlidingActivity.this,
-                            android.R.interpolator.linear_out_slow_in);
-                } else {
-                    interpolator = new DecelerateInterpolator();
-                }
-
-                final ValueAnimator contentAlpha = ValueAnimator.ofFloat(1f, 0f);
-                contentAlpha.setInterpolator(interpolator);
-                contentAlpha.setDuration(MultiShrinkScroller.ANIMATION_DURATION + 300);
-                contentAlpha.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        float val = (float) animation.getAnimatedValue();
-                        scroller.setAlpha(val);
-                        windowScrim.setAlpha((int) (0xFF * val));
-                    }
-                });
-                contentAlpha.start();
+                SlidingUtils.fadeOutForReverseExpansion(scroller, windowScrim);
             }
         }
 
         @Override
         public void onEntranceAnimationDone() {
             isEntranceAnimationFinished = true;
+
+            SlidingUtils.showContentAfterEntrance(content);
+
+            attachStagedContent();
+
+            if (scroller.getScrollNeededToBeFullScreen() <= 0) {
+                setWindowOpaque(true);
+            }
         }
 
         @Override
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Lays out the sliding card in a single pass: the transparent gap at the top, the header below
+ * it, the content below that and the fab hanging off the bottom of the header, with optional
+ * empty columns on either side of the card.
+ *
+ * This replaces a LinearLayout wrapping a RelativeLayout, which measured every child twice.
+ * {@link MultiShrinkScroller} changes the height of the gap and the header on every scroll
+ * frame, so the card is laid out constantly. Since the structure is known, each child can be
+ * measured exactly once with exact constraints:
+ *
+ * - transparent_view: the card width, and the height from its layout params.
+ * - toolbar_parent: the card width, and the height from its layout params, or the rest of the
+ *   card when it is match_parent.
+ * - content_scroller: the card width, and whatever height is left below the header.
+ * - fab: wrap content, aligned to the end of the card and placed below the header. Use a
+ *   negative top margin to have it overlap the header.
+ * - empty_start_column and empty_end_column: the full height, with the width given by
+ *   column_weight out of the total weight.
+ *
+ * Any other child fills the card.
+ */
+public class SlidingCardLayout extends ViewGroup {
+
+    private final int cardWeight;
+    private final int columnWeight;
+
+    private View transparentView;
+    private View header;
+    private View content;
+    private View fab;
+    private View startColumn;
+    private View endColumn;
+
+    /**
+     * Creates a new instance of SlidingCardLayout.
+     * @param context
+     */
+    public SlidingCardLayout(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Creates a new instance of SlidingCardLayout.
+     * @param context
+     * @param attrs
+     */
+    public SlidingCardLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    /**
+     * Creates a new instance of SlidingCardLayout.
+     * @param context
+     * @param attrs
+     * @param defStyleAttr
+     */
+    public SlidingCardLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        final TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.SlidingCardLayout, defStyleAttr, 0);
+        cardWeight = a.getInt(R.styleable.SlidingCardLayout_card_weight, 1);
+        columnWeight = a.getInt(R.styleable.SlidingCardLayout_column_weight, 0);
+        a.recycle();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+
+        for (int i = 0; i < getChildCount(); i++) {
+            final View child = getChildAt(i);
+            final int id = child.getId();
+            if (id == R.id.transparent_view) {
+                transparentView = child;
+            } else if (id == R.id.toolbar_parent) {
+                header = child;
+            } else if (id == R.id.content_scroller) {
+                content = child;
+            } else if (id == R.id.fab) {
+                fab = child;
+            } else if (id == R.id.empty_start_column) {
+                startColumn = child;
+            } else if (id == R.id.empty_end_column) {
+                endColumn = child;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        final int height = MeasureSpec.getSize(heightMeasureSpec);
+        final int columnWidth = getColumnWidth(width);
+        final int cardWidth = width - 2 * columnWidth;
+
+        final int gapHeight = getFixedHeight(transparentView, 0);
+        final int headerHeight = getFixedHeight(header, Math.max(0, height - gapHeight));
+        final int contentHeight = Math.max(0, height - gapHeight - headerHeight);
+
+        for (int i = 0; i < getChildCount(); i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+
+            if (child == fab) {
+                measureChildWithMargins(child, exactly(cardWidth), 0, exactly(height), 0);
+            } else if (child == startColumn || child == endColumn) {
+                child.measure(exactly(columnWidth), exactly(height));
+            } else if (child == transparentView) {
+                child.measure(exactly(cardWidth), exactly(gapHeight));
+            } else if (child == header) {
+                child.measure(exactly(cardWidth), exactly(headerHeight));
+            } else if (child == content) {
+                child.measure(exactly(cardWidth), exactly(contentHeight));
+            } else {
+                child.measure(exactly(cardWidth), exactly(height));
+            }
+        }
+
+        setMeasuredDimension(width, height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final int width = r - l;
+        final int columnWidth = getColumnWidth(width);
+        final int cardLeft = columnWidth;
+        final int cardRight = width - columnWidth;
+        final boolean isRtl = isLayoutRtl();
+
+        int top = 0;
+        if (transparentView != null && transparentView.getVisibility() != GONE) {
+            top = layoutChild(transparentView, cardLeft, top);
+        }
+        if (header != null && header.getVisibility() != GONE) {
+            top = layoutChild(header, cardLeft, top);
+        }
+        final int headerBottom = top;
+        if (content != null && content.getVisibility() != GONE) {
+            layoutChild(content, cardLeft, top);
+        }
+
+        for (int i = 0; i < getChildCount(); i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE || child == transparentView || child == header
+                    || child == content) {
+                continue;
+            }
+
+            if (child == fab) {
+                final MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+                final int fabLeft = isRtl ? cardLeft + lp.leftMargin :
+                        cardRight - lp.rightMargin - child.getMeasuredWidth();
+                layoutChild(child, fabLeft, headerBottom + lp.topMargin);
+            } else if (child == startColumn) {
+                layoutChild(child, isRtl ? cardRight : 0, 0);
+            } else if (child == endColumn) {
+                layoutChild(child, isRtl ? 0 : cardRight, 0);
+            } else {
+                layoutChild(child, cardLeft, 0);
+            }
+        }
+    }
+
+    private int layoutChild(View child, int left, int top) {
+        final int bottom = top + child.getMeasuredHeight();
+        child.layout(left, top, left + child.getMeasuredWidth(), bottom);
+        return bottom;
+    }
+
+    private int getColumnWidth(int width) {
+        // Hiding the empty columns gives the card the whole width, as it did when they were
+        // weighted children of a LinearLayout.
+        if (columnWeight <= 0 || isHidden(startColumn) || isHidden(endColumn)) {
+            return 0;
+        }
+
+        return width * columnWeight / (cardWeight + 2 * columnWeight);
+    }
+
+    private static boolean isHidden(View column) {
+        return column == null || column.getVisibility() == GONE;
+    }
+
+    private static int getFixedHeight(View child, int matchParentHeight) {
+        if (child == null || child.getVisibility() == GONE) {
+            return 0;
+        }
+
+        final int height = child.getLayoutParams().height;
+        return height >= 0 ? height : matchParentHeight;
+    }
+
+    private static int exactly(int size) {
+        return MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY);
+    }
+
+    private boolean isLayoutRtl() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 &&
+                getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new MarginLayoutParams(getContext(), attrs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new MarginLayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected LayoutParams generateLayoutParams(LayoutParams p) {
+        return new MarginLayoutParams(p);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean checkLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Debug tools for tracking down memory problems with sliding screens. Turn this on in debug
+ * builds only, ie:
+ *
+ * if (BuildConfig.DEBUG) {
+ *     SlidingDebug.setEnabled(true);
+ * }
+ *
+ * While enabled, every {@link SlidingActivity} logs a {@link MemoryReport} when it is destroyed
+ * and is then watched through a weak reference. If it can still be reached a while later, even
+ * after a garbage collection, a warning is logged since something is leaking it. Header images
+ * that are much larger than the header they are displayed in are also logged.
+ */
+public class SlidingDebug {
+
+    private static final String TAG = "SlidingDebug";
+
+    /**
+     * How long to wait after onDestroy() before checking whether the activity was collected.
+     */
+    public static final long LEAK_CHECK_DELAY_MS = 5000;
+
+    private static final int LEAK_CHECK_ATTEMPTS = 2;
+    private static final int OVERSIZED_BITMAP_FACTOR = 2;
+
+    private static volatile boolean isEnabled = false;
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    // don't allow for instantiation
+    private SlidingDebug() {
+
+    }
+
+    /**
+     * Turn the debug accounting and leak detection on or off. It is off by default.
+     * @param enabled true to turn it on.
+     */
+    public static void setEnabled(boolean enabled) {
+        isEnabled = enabled;
+    }
+
+    /**
+     * Check whether the debug accounting is on.
+     * @return true if it is on.
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Get the current memory accounting for a sliding activity. This works whether or not the
+     * debug tools are enabled.
+     * @param activity the activity.
+     * @return the report.
+     */
+    public static MemoryReport getReport(SlidingActivity activity) {
+        return activity.getMemoryReport();
+    }
+
+    /**
+     * Start watching an object that should be collected soon, ie an activity that was just
+     * destroyed. A warning is logged if it is still reachable after the delay.
+     * @param object the object.
+     * @param description what to call it in the warning.
+     */
+    static void watchForLeak(Object object, String description) {
+        handler.postDelayed(new LeakCheck(object, description), LEAK_CHECK_DELAY_MS);
+    }
+
+    /**
+     * Log a warning if a header image has a lot more pixels than it can ever be shown with.
+     * @param bitmap the header image.
+     * @param headerWidth the width of the header, or the screen width if it isn't known yet.
+     */
+    static void checkHeaderBitmap(Bitmap bitmap, int headerWidth) {
+        if (headerWidth > 0 && bitmap.getWidth() > headerWidth * OVERSIZED_BITMAP_FACTOR) {
+            Log.w(TAG, "header image is " + bitmap.getWidth() + "x" + bitmap.getHeight() +
+                    " (" + bitmap.getByteCount() / 1024 + " KB), but the header is only " +
+                    headerWidth + "px wide. Consider decoding it with inSampleSize.");
+        }
+    }
+
+    /**
+     * Count a view and all of its descendants.
+     * @param view the root view, may be null.
+     * @return the number of views.
+     */
+    static int countViews(View view) {
+        if (view == null) {
+            return 0;
+        }
+
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The memory held by a single sliding screen.
+     */
+    public static class MemoryReport {
+
+        private final int headerBitmapBytes;
+        private final int viewCount;
+        private final int liveAnimators;
+        private final int pendingCallbacks;
+
+        MemoryReport(int headerBitmapBytes, int viewCount, int liveAnimators,
+                     int pendingCallbacks) {
+            this.headerBitmapBytes = headerBitmapBytes;
+            this.viewCount = viewCount;
+            this.liveAnimators = liveAnimators;
+            this.pendingCallbacks = pendingCallbacks;
+        }
+
+        /**
+         * Get the size of the header images that are being held, including any that were
+         * swapped out under memory pressure but haven't been collected yet.
+         * @return the size in bytes.
+         */
+        public int getHeaderBitmapBytes() {
+            return headerBitmapBytes;
+        }
+
+        /**
+         * Get the number of views in the sliding hierarchy, including the content.
+         * @return the number of views.
+         */
+        public int getViewCount() {
+            return viewCount;
+        }
+
+        /**
+         * Get the number of scroller animations that have started but not ended.
+         * @return the number of animators.
+         */
+        public int getLiveAnimators() {
+            return liveAnimators;
+        }
+
+        /**
+         * Get the number of callbacks that are still waiting to run: background work, entrance
+         * gate tickets and scroller frame callbacks.
+         * @return the number of callbacks.
+         */
+        public int getPendingCallbacks() {
+            return pendingCallbacks;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryReport{headerBitmapBytes=" + headerBitmapBytes +
+                    ", viewCount=" + viewCount +
+                    ", liveAnimators=" + liveAnimators +
+                    ", pendingCallbacks=" + pendingCallbacks + "}";
+        }
+    }
+
+    /**
+     * Checks whether a watched object has been collected. It only holds the object weakly, so it
+     * doesn't keep it alive itself.
+     */
+    private static class LeakCheck implements Runnable {
+
+        private final WeakReference<Object> reference;
+        private final String description;
+        private int attempts;
+
+        private LeakCheck(Object object, String description) {
+            this.reference = new WeakReference<Object>(object);
+            this.description = description;
+        }
+
+        @Override
+        public void run() {
+            if (reference.get() == null) {
+                return;
+            }
+
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Runtime.getRuntime().gc();
+
+            if (reference.get() == null) {
+                return;
+            }
+
+            attempts++;
+            if (attempts < LEAK_CHECK_ATTEMPTS) {
+                handler.postDelayed(this, LEAK_CHECK_DELAY_MS);
+            } else {
+                Log.w(TAG, description + " is still reachable " +
+                        (attempts * LEAK_CHECK_DELAY_MS / 1000) + "s after onDestroy(), " +
+                        "something is leaking it. Take a heap dump to find the path to it.");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Process wide executors used by the library for any work it does off of the main thread. The
+ * library never creates threads of its own: by default background work runs on
+ * {@link AsyncTask#THREAD_POOL_EXECUTOR}, but apps that already have tuned executors for image
+ * or IO work should supply them here, typically in Application.onCreate().
+ *
+ * Individual activities can still override these with
+ * {@link SlidingActivity#setExecutors(Executor, Executor)}.
+ */
+public class SlidingExecutors {
+
+    private static final Executor DEFAULT_MAIN_EXECUTOR = new MainThreadExecutor();
+
+    private static volatile Executor backgroundExecutor;
+    private static volatile Executor mainExecutor;
+
+    // don't allow for instantiation
+    private SlidingExecutors() {
+
+    }
+
+    /**
+     * Set the executor that will be used for background work, such as decoding images and
+     * extracting colors. Pass null to go back to the default.
+     * @param executor the background executor.
+     */
+    public static void setBackgroundExecutor(Executor executor) {
+        backgroundExecutor = executor;
+    }
+
+    /**
+     * Set the executor that will be used to deliver the results of background work. It must run
+     * its tasks on the main thread. Pass null to go back to the default.
+     * @param executor the main thread executor.
+     */
+    public static void setMainExecutor(Executor executor) {
+        mainExecutor = executor;
+    }
+
+    /**
+     * Get the executor to use for background work.
+     * @return the background executor.
+     */
+    public static Executor getBackgroundExecutor() {
+        if (backgroundExecutor != null) {
+            return backgroundExecutor;
+        }
+
+        return AsyncTask.THREAD_POOL_EXECUTOR;
+    }
+
+    /**
+     * Get the executor to use for delivering results on the main thread.
+     * @return the main thread executor.
+     */
+    public static Executor getMainExecutor() {
+        if (mainExecutor != null) {
+            return mainExecutor;
+        }
+
+        return DEFAULT_MAIN_EXECUTOR;
+    }
+
+    /**
+     * Posts all tasks to the main looper.
+     */
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    }
+
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.support.design.widget.FloatingActionButton;
+import android.support.v7.graphics.Palette;
+import android.support.v7.widget.Toolbar;
+import android.text.TextUtils;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+/**
+ * The same sliding sheet that {@link SlidingActivity} shows, but as a view that can be placed
+ * over the content of an existing activity. This skips launching a new activity and window,
+ * which makes opening much faster for drill downs within the same screen.
+ *
+ * A single instance can be kept around and shown again after it has been dismissed, the title,
+ * image, colors and content will still be set.
+ *
+ * Usage:
+ *
+ * SlidingLayout layout = new SlidingLayout(activity);
+ * layout.setTitle("Title");
+ * layout.setContent(R.layout.content);
+ * layout.show(activity);
+ *
+ * The hosting activity should forward back presses with {@link #handleBackPressed()}.
+ */
+public class SlidingLayout extends FrameLayout {
+
+    private static final int SCRIM_COLOR = Color.argb(0xC8, 0, 0, 0);
+    private static final int DEFAULT_PRIMARY_COLOR = 0xff607D8B;
+
+    /**
+     * Interface for listening to the layout being dismissed.
+     */
+    public interface OnDismissListener {
+
+        void onDismissed(SlidingLayout layout);
+
+    }
+
+    private final MultiShrinkScroller scroller;
+    private final FrameLayout content;
+    private final FrameLayout headerContent;
+    private final ImageView photoView;
+    private final FloatingActionButton fab;
+    private final Toolbar toolbar;
+    private final ColorDrawable scrim;
+    private boolean isShowing;
+    private boolean hasBeenShown;
+    private boolean isEntranceAnimationFinished;
+    private boolean isExitAnimationInProgress;
+    private boolean startFullscreen = false;
+    private boolean disabledHeader = false;
+    private boolean hasPrimaryColors = false;
+    private MultiShrinkScroller.OpenAnimation openAnimation = MultiShrinkScroller.OpenAnimation.SLIDE_UP;
+    private int expansionLeftOffset;
+    private int expansionTopOffset;
+    private int expansionViewWidth;
+    private int expansionViewHeight;
+    private OnDismissListener onDismissListener;
+
+    /**
+     * Create a new instance of SlidingLayout, using the light content background.
+     * @param context the context, usually the activity that will show this layout.
+     */
+    public SlidingLayout(Context context) {
+        this(context, R.style.ThemeOverlay_Sliding_Light);
+    }
+
+    /**
+     * Create a new instance of SlidingLayout.
+     * @param context the context, usually the activity that will show this layout.
+     * @param themeOverlay the theme overlay to use, one of {@code ThemeOverlay.Sliding},
+     *                     {@code ThemeOverlay.Sliding.Light} or
+     *                     {@code ThemeOverlay.Sliding.DayNight}.
+     */
+    public SlidingLayout(Context context, int themeOverlay) {
+        super(new ContextThemeWrapper(context, themeOverlay));
+
+        final LayoutInflater inflater = LayoutInflater.from(getContext());
+        inflater.inflate(R.layout.sliding_activity, this, true);
+
+        scroller = (MultiShrinkScroller) findViewById(R.id.multiscroller);
+        content = (FrameLayout) findViewById(R.id.content_container);
+        headerContent = (FrameLayout) findViewById(R.id.header_content_container);
+        photoView = (ImageView) findViewById(R.id.photo);
+        fab = (FloatingActionButton) findViewById(R.id.fab);
+        toolbar = (Toolbar) findViewById(R.id.toolbar);
+
+        findViewById(R.id.transparent_view).setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dismiss();
+            }
+        });
+
+        ViewUtil.addRectangularOutlineProvider(findViewById(R.id.toolbar_parent), getResources());
+
+        // Put a TextView with a known resource id into the Toolbar. This allows us to easily
+        // find the correct TextView location & size later.
+        toolbar.addView(inflater.inflate(R.layout.sliding_title_placeholder, toolbar, false));
+
+        scrim = new ColorDrawable(SCRIM_COLOR);
+        scrim.setAlpha(0);
+        setBackgroundDrawable(scrim);
+
+        scroller.initialize(scrollerListener, false);
+        scroller.setEnableFab(false);
+    }
+
+    /**
+     * Show the layout over the content of an activity, running the entrance animation.
+     * @param activity the activity to show the layout in.
+     */
+    public void show(Activity activity) {
+        if (isShowing) {
+            return;
+        }
+
+        isShowing = true;
+        isEntranceAnimationFinished = false;
+        isExitAnimationInProgress = false;
+
+        if (hasBeenShown) {
+            scroller.reset(scrollerListener);
+            content.setVisibility(View.VISIBLE);
+            content.setAlpha(1f);
+        }
+
+        if (openAnimation == MultiShrinkScroller.OpenAnimation.EXPAND_FROM_VIEW) {
+            scroller.setExpansionPoints(expansionLeftOffset, expansionTopOffset,
+                    expansionViewWidth, expansionViewHeight);
+        }
+
+        SlidingUtils.hideEmptyColumns(this, disabledHeader);
+
+        scrim.setAlpha(0);
+        final ViewGroup root = (ViewGroup) activity.findViewById(android.R.id.content);
+        root.addView(this, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+
+        SchedulingUtils.doOnPreDraw(scroller, /* drawNextFrame = */ false, new Runnable() {
+            @Override
+            public void run() {
+                runEntranceAnimation();
+            }
+        });
+
+        hasBeenShown = true;
+    }
+
+    /**
+     * Dismiss the layout by scrolling it off the bottom of the screen. It is removed from the
+     * activity once the animation is done.
+     */
+    public void dismiss() {
+        if (isShowing && !isExitAnimationInProgress) {
+            scroller.scrollOffBottom();
+        }
+    }
+
+    /**
+     * Check whether the layout is currently being shown.
+     * @return true if the layout is attached to an activity.
+     */
+    public boolean isShowing() {
+        return isShowing;
+    }
+
+    /**
+     * Dismiss the layout if it is showing. Call this from the activity's onBackPressed().
+     * @return true if the back press was handled.
+     */
+    public boolean handleBackPressed() {
+        if (!isShowing) {
+            return false;
+        }
+
+        dismiss();
+        return true;
+    }
+
+    /**
+     * Set a listener that will be notified once the layout has been dismissed and removed.
+     * @param listener the listener.
+     */
+    public void setOnDismissListener(OnDismissListener listener) {
+        this.onDismissListener = listener;
+    }
+
+    /**
+     * Set the title for the scroller.
+     * @param title the title to display.
+     */
+    public void setTitle(CharSequence title) {
+        if (!TextUtils.isEmpty(title)) {
+            scroller.setTitle(title.toString());
+        }
+    }
+
+    /**
+     * Set the title for the scroller.
+     * @param resId the title res id to display.
+     */
+    public void setTitle(int resId) {
+        setTitle(getResources().getText(resId));
+    }
+
+    /**
+     * Set the text color of the title.
+     * @param textColor the text color.
+     */
+    public void setTitleTextColor(int textColor) {
+        scroller.setTitleTextColor(textColor);
+    }
+
+    /**
+     * Set the primary color for the layout. This is displayed as the background of the header.
+     * @param primaryColor the primary color to display.
+     */
+    public void setPrimaryColor(int primaryColor) {
+        hasPrimaryColors = true;
+        scroller.setHeaderTintColor(primaryColor);
+    }
+
+    /**
+     * Set the content to be displayed in the scrolling area.
+     * @param resId the resource id to inflate for the content.
+     */
+    public void setContent(int resId) {
+        setContent(LayoutInflater.from(getContext()).inflate(resId, content, false));
+    }
+
+    /**
+     * Set the content to be displayed in the scrolling area, replacing any previous content.
+     * @param view the view to use for the content.
+     */
+    public void setContent(View view) {
+        content.removeAllViews();
+        content.addView(view);
+    }
+
+    /**
+     * Set the content to be displayed inside the header area.
+     * @param resId the resource id to inflate for the content.
+     */
+    public void setHeaderContent(int resId) {
+        setHeaderContent(LayoutInflater.from(getContext()).inflate(resId, headerContent, false));
+    }
+
+    /**
+     * Set the content to be displayed in the header area, replacing any previous content.
+     * @param view the view to use for the content.
+     */
+    public void setHeaderContent(View view) {
+        headerContent.removeAllViews();
+        headerContent.addView(view);
+    }
+
+    /**
+     * Set the image to be displayed in the header.
+     * @param resId the resource id to use for the bitmap to be created for the header.
+     */
+    public void setImage(int resId) {
+        setImage(BitmapFactory.decodeResource(getResources(), resId));
+    }
+
+    /**
+     * Set the image to be displayed in the header. If no primary color has been set yet, one
+     * will be extracted from the image with Palette.
+     * @param bitmap the bitmap to display.
+     */
+    public void setImage(Bitmap bitmap) {
+        photoView.setImageBitmap(bitmap);
+
+        if (!hasPrimaryColors) {
+            Palette palette = Palette.from(bitmap).generate();
+            scroller.setHeaderTintColor(palette.getVibrantColor(DEFAULT_PRIMARY_COLOR));
+        }
+    }
+
+    /**
+     * Enable an FAB on the screen.
+     * @param color the color for the FAB.
+     * @param drawableRes the drawable to display on the FAB.
+     * @param onClickListener the listener to activate when clicked on.
+     */
+    public void setFab(int color, int drawableRes, OnClickListener onClickListener) {
+        SlidingUtils.setFab(scroller, fab, color, getResources().getDrawable(drawableRes),
+                onClickListener);
+    }
+
+    /**
+     * Disables the header and only displays the scrolling content below it.
+     */
+    public void disableHeader() {
+        disabledHeader = true;
+        scroller.disableHeader();
+    }
+
+    /**
+     * Perform an Inbox style expansion from a view instead of the simple slide up expansion.
+     *
+     * @param leftOffset how many pixels from the left edge of the screen the view you are expanding from is.
+     * @param topOffset how many pixels from the top edge of the screen the view you are expanding from is.
+     * @param viewWidth the width of the view you are expanding from.
+     * @param viewHeight the height of the view you are expanding from/
+     */
+    public void expandFromPoints(int leftOffset, int topOffset, int viewWidth, int viewHeight) {
+        openAnimation = MultiShrinkScroller.OpenAnimation.EXPAND_FROM_VIEW;
+        expansionLeftOffset = leftOffset;
+        expansionTopOffset = topOffset;
+        expansionViewWidth = viewWidth;
+        expansionViewHeight = viewHeight;
+    }
+
+    /**
+     * Show the layout fullscreen instead of first requiring the user to scroll up.
+     */
+    public void enableFullscreen() {
+        startFullscreen = true;
+    }
+
+    /**
+     * Get the toolbar in the header, for adding menu items.
+     * @return the toolbar.
+     */
+    public Toolbar getToolbar() {
+        return toolbar;
+    }
+
+    /**
+     * Get the instance of fab.
+     * @return the FloatingActionButton instance.
+     */
+    public FloatingActionButton getFab() {
+        return fab;
+    }
+
+    /**
+     * Get the scroller, for any further configuration.
+     * @return the scroller.
+     */
+    public MultiShrinkScroller getScroller() {
+        return scroller;
+    }
+
+    private void runEntranceAnimation() {
+        SlidingUtils.animateScrimIn(scroller, scrim);
+
+        if (openAnimation == MultiShrinkScroller.OpenAnimation.EXPAND_FROM_VIEW) {
+            // hide the content and show it once the expansion is done, much smoother animation
+            content.setVisibility(View.GONE);
+        }
+
+        final boolean openToCurrentPosition = getResources().getConfiguration().orientation
+                != Configuration.ORIENTATION_LANDSCAPE && !startFullscreen;
+        scroller.performEntranceAnimation(openAnimation, openToCurrentPosition);
+    }
+
+    private void removeFromActivity() {
+        isShowing = false;
+
+        final ViewGroup parent = (ViewGroup) getParent();
+        if (parent != null) {
+            parent.removeView(this);
+        }
+
+        if (onDismissListener != null) {
+            onDismissListener.onDismissed(this);
+        }
+    }
+
+    private final MultiShrinkScroller.MultiShrinkScrollerListener scrollerListener
+            = new MultiShrinkScroller.MultiShrinkScrollerListener() {
+        @Override
+        public void onScrolledOffBottom() {
+            removeFromActivity();
+        }
+
+        @Override
+        public void onEnterFullscreen() {
+
+        }
+
+        @Override
+        public void onExitFullscreen() {
+
+        }
+
+        @Override
+        public void onStartDrag() {
+
+        }
+
+        @Override
+        public void onStopDrag() {
+
+        }
+
+        @Override
+        public void onStartScrollOffBottom() {
+            isExitAnimationInProgress = true;
+
+            if (scroller.willUseReverseExpansion()) {
+                // Keep the content around so that the layout can be shown again.
+                content.setVisibility(View.INVISIBLE);
+                SlidingUtils.fadeOutForReverseExpansion(scroller, scrim);
+            }
+        }
+
+        @Override
+        public void onEntranceAnimationDone() {
+            isEntranceAnimationFinished = true;
+
+            SlidingUtils.showContentAfterEntrance(content);
+        }
+
+        @Override
+        public void onTransparentViewHeightChange(float ratio) {
+            if (isEntranceAnimationFinished) {
+                scrim.setAlpha((int) (0xFF * ratio));
+            }
+        }
+    };
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
+import android.content.res.ColorStateList;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.design.widget.FloatingActionButton;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Set up and animation steps shared by {@link SlidingActivity} and {@link SlidingLayout}, which
+ * show the same sliding_activity hierarchy, one in its own window and one over an existing
+ * activity. The scrim is the window background for the activity and the layout's own background.
+ */
+class SlidingUtils {
+
+    // don't allow for instantiation
+    private SlidingUtils() {
+
+    }
+
+    /**
+     * Enable the FAB.
+     * @param scroller the scroller that shows and hides the FAB.
+     * @param fab the FAB.
+     * @param color the color for the FAB.
+     * @param drawable the drawable to display on the FAB.
+     * @param onClickListener the listener to activate when clicked on.
+     */
+    static void setFab(MultiShrinkScroller scroller, FloatingActionButton fab, int color,
+                       Drawable drawable, View.OnClickListener onClickListener) {
+        fab.setBackgroundTintList(
+                new ColorStateList(
+                        new int[][] {
+                                new int[] {}
+                        },
+                        new int[] {
+                                color
+                        }
+                )
+        );
+
+        fab.setImageDrawable(drawable);
+        fab.setOnClickListener(onClickListener);
+
+        scroller.setEnableFab(true);
+    }
+
+    /**
+     * When we have a phone in landscape and a two column layout, we don't want the padded edges
+     * on the side of it, so we set them to gone.
+     * @param root the view holding the sliding_activity hierarchy.
+     * @param disabledHeader whether the header has been disabled.
+     */
+    static void hideEmptyColumns(View root, boolean disabledHeader) {
+        if (!disabledHeader && root.getResources().getBoolean(R.bool.full_screen_with_header)) {
+            View emptyStart = root.findViewById(R.id.empty_start_column);
+            View emptyEnd = root.findViewById(R.id.empty_end_column);
+
+            if (emptyStart != null && emptyEnd != null) {
+                emptyStart.setVisibility(View.GONE);
+                emptyEnd.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    /**
+     * Fade the scrim in along with the entrance animation. The initial scrim opacity must match
+     * the scrim opacity that would be achieved by scrolling to the starting position.
+     * @param scroller the scroller, after it has been laid out.
+     * @param scrim the scrim behind the scroller.
+     */
+    static void animateScrimIn(MultiShrinkScroller scroller, ColorDrawable scrim) {
+        final float alphaRatio = scroller.getStartingTransparentHeightRatio();
+        final int duration = scroller.getResources().getInteger(
+                android.R.integer.config_shortAnimTime);
+        ObjectAnimator.ofInt(scrim, "alpha", 0, (int) (0xFF * alphaRatio))
+                .setDuration(duration)
+                .start();
+    }
+
+    /**
+     * Fade the scroller and the scrim out while the reverse expansion runs.
+     * @param scroller the scroller.
+     * @param scrim the scrim behind the scroller.
+     */
+    static void fadeOutForReverseExpansion(final MultiShrinkScroller scroller,
+                                           final ColorDrawable scrim) {
+        final Interpolator interpolator;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            interpolator = AnimationUtils.loadInterpolator(scroller.getContext(),
+                    android.R.interpolator.linear_out_slow_in);
+        } else {
+            interpolator = new DecelerateInterpolator();
+        }
+
+        final ValueAnimator contentAlpha = ValueAnimator.ofFloat(0f, 1f);
+        contentAlpha.setInterpolator(interpolator);
+        contentAlpha.setDuration(MultiShrinkScroller.ANIMATION_DURATION + 300);
+        contentAlpha.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                // Use the fraction instead of getAnimatedValue(), which boxes a Float.
+                float val = 1f - animation.getAnimatedFraction();
+                scroller.setAlpha(val);
+                scrim.setAlpha((int) (0xFF * val));
+            }
+        });
+        contentAlpha.start();
+    }
+
+    /**
+     * Fade the content in once the entrance animation is done, if it was hidden for the
+     * expansion.
+     * @param content the content container.
+     */
+    static void showContentAfterEntrance(View content) {
+        if (content.getVisibility() == View.GONE) {
+            content.setVisibility(View.VISIBLE);
+            content.setAlpha(0f);
+            content.animate()
+                    .alpha(1f)
+                    .start();
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.support.v7.widget.AppCompatImageView;
+import android.support.v7.widget.AppCompatTextView;
+import android.util.AttributeSet;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An opt in pool of sliding hierarchies that are inflated ahead of time, while the main thread
+ * is idle, and handed to new {@link SlidingActivity} instances so that they don't have to
+ * inflate the layout themselves. This is useful for apps that open a lot of sliding screens.
+ *
+ * Call {@link #prepare(Context, int)} with the theme of your sliding activities, for example
+ * in Application.onCreate(). Each hierarchy is only ever handed out once, so there is no state
+ * to reset, and the pool is thrown away whenever the configuration changes since the layout
+ * depends on it. All methods must be called on the main thread.
+ *
+ * The hierarchies are inflated before there is an activity, so AppCompat's inflater factory
+ * can't be used. Instead the pool creates the same AppCompat widgets it would for the views in
+ * the sliding layout, and throws a hierarchy away if the layout contains anything else that
+ * AppCompat would have replaced. The views keep a {@link MutableContextWrapper} as their context,
+ * which points at the activity once it takes the hierarchy, so code that needs the activity
+ * itself has to unwrap it. Android versions before Lollipop need AppCompat to apply the
+ * android:theme attributes in the layout, so the pool isn't used on them.
+ */
+public class SlidingViewPool {
+
+    private static final List<Entry> entries = new ArrayList<Entry>();
+    private static final List<Integer> themes = new ArrayList<Integer>();
+    private static Context appContext;
+    private static int poolSize = 1;
+    private static boolean isFillScheduled;
+
+    // don't allow for instantiation
+    private SlidingViewPool() {
+
+    }
+
+    /**
+     * Keep one pre-inflated hierarchy ready for activities using the given theme.
+     * @param context any context, the application context will be kept.
+     * @param themeResId the theme of the sliding activities, ie R.style.Theme_Sliding_Light.
+     */
+    public static void prepare(Context context, int themeResId) {
+        prepare(context, themeResId, 1);
+    }
+
+    /**
+     * Keep pre-inflated hierarchies ready for activities using the given theme.
+     * @param context any context, the application context will be kept.
+     * @param themeResId the theme of the sliding activities, ie R.style.Theme_Sliding_Light.
+     * @param size the number of hierarchies to keep for each theme, usually one or two.
+     */
+    public static void prepare(Context context, int themeResId, int size) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+            appContext.registerComponentCallbacks(new ComponentCallbacks() {
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                    // Every layout variant could be different now.
+                    entries.clear();
+                    scheduleFill();
+                }
+
+                @Override
+                public void onLowMemory() {
+                    entries.clear();
+                }
+            });
+        }
+
+        if (!themes.contains(themeResId)) {
+            themes.add(themeResId);
+        }
+
+        poolSize = size;
+        scheduleFill();
+    }
+
+    /**
+     * Throw away all of the pre-inflated hierarchies and stop inflating new ones.
+     */
+    public static void clear() {
+        entries.clear();
+        themes.clear();
+    }
+
+    /**
+     * Take a pre-inflated hierarchy for the activity if one is available.
+     * @param context the activity that will use the hierarchy.
+     * @param themeResId the theme of the activity.
+     * @return the root of the hierarchy, or null if there isn't a matching one.
+     */
+    static View acquire(Context context, int themeResId) {
+        final Configuration configuration = context.getResources().getConfiguration();
+        View view = null;
+
+        final Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.configuration.diff(configuration) != 0) {
+                // Inflated for a different configuration, we can never use it.
+                iterator.remove();
+            } else if (view == null && entry.themeResId == themeResId) {
+                iterator.remove();
+                entry.context.setBaseContext(context);
+                view = entry.view;
+            }
+        }
+
+        if (themes.contains(themeResId)) {
+            scheduleFill();
+        }
+
+        return view;
+    }
+
+    private static void scheduleFill() {
+        if (isFillScheduled || appContext == null) {
+            return;
+        }
+
+        isFillScheduled = true;
+        SchedulingUtils.doOnIdle(new Runnable() {
+            @Override
+            public void run() {
+                isFillScheduled = false;
+                fill();
+            }
+        });
+    }
+
+    /**
+     * Inflate a single missing hierarchy, scheduling another fill if more are still needed. This
+     * way each idle pass only does one inflation.
+     */
+    private static void fill() {
+        for (Integer theme : themes) {
+            if (countEntries(theme) < poolSize) {
+                final Entry entry = new Entry(theme);
+                if (entry.view == null) {
+                    // The layout can't be inflated the way the activity would, so stop trying.
+                    clear();
+                    return;
+                }
+
+                entries.add(entry);
+                scheduleFill();
+                return;
+            }
+        }
+    }
+
+    private static int countEntries(int themeResId) {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.themeResId == themeResId) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A hierarchy inflated for a theme and configuration.
+     */
+    private static class Entry {
+
+        private final int themeResId;
+        private final Configuration configuration;
+        private final MutableContextWrapper context;
+        private final View view;
+
+        private Entry(int themeResId) {
+            this.themeResId = themeResId;
+
+            // The views hold on to this wrapper, so that it can be pointed at the activity once
+            // it takes the hierarchy.
+            context = new MutableContextWrapper(new ContextThemeWrapper(appContext, themeResId));
+            configuration = new Configuration(context.getResources().getConfiguration());
+
+            final AppCompatWidgetFactory factory = new AppCompatWidgetFactory();
+            final LayoutInflater inflater = LayoutInflater.from(appContext).cloneInContext(context);
+            inflater.setFactory2(factory);
+            final View inflated = inflater.inflate(R.layout.sliding_activity, null, false);
+            view = factory.hasUnsupportedView ? null : inflated;
+        }
+    }
+
+    /**
+     * Creates the AppCompat versions of the framework widgets used in the sliding layout, the same
+     * way AppCompat's own inflater factory does for the activity. Any other widget that AppCompat
+     * would replace is noted, so that the hierarchy isn't used.
+     */
+    private static class AppCompatWidgetFactory implements LayoutInflater.Factory2 {
+
+        private static final String[] UNSUPPORTED_VIEWS = {
+                "Button", "EditText", "Spinner", "ImageButton", "CheckBox", "RadioButton",
+                "CheckedTextView", "AutoCompleteTextView", "MultiAutoCompleteTextView",
+                "RatingBar", "SeekBar"
+        };
+
+        private boolean hasUnsupportedView;
+
+        @Override
+        public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
+            if ("TextView".equals(name)) {
+                return new AppCompatTextView(context, attrs);
+            } else if ("ImageView".equals(name)) {
+                return new AppCompatImageView(context, attrs);
+            }
+
+            for (String unsupported : UNSUPPORTED_VIEWS) {
+                if (unsupported.equals(name)) {
+                    hasUnsupportedView = true;
+                    break;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public View onCreateView(String name, Context context, AttributeSet attrs) {
+            return onCreateView(null, name, context, attrs);
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Records the touch events that a {@link MultiShrinkScroller} receives into a compact binary
+ * trace, and replays them back into a view later on. This makes it possible to capture a drag
+ * on a real device and reproduce it exactly when looking into scrolling performance.
+ *
+ * Each event stores its action along with the index of the pointer it applies to, the ids of
+ * all of its pointers, its down and event time, and the position of every pointer for each of
+ * its historical samples and the current one. Times are stored relative to the first recorded
+ * event. Replayed events come from the touchscreen, just like the recorded ones.
+ *
+ * Usage:
+ *
+ * TouchTrace trace = new TouchTrace();
+ * scroller.setTouchTrace(trace);
+ * ...
+ * trace.writeTo(outputStream);
+ *
+ * TouchTrace.readFrom(inputStream).replay(scroller);
+ */
+public class TouchTrace {
+
+    private static final int MAGIC = 0x53545243; // "STRC"
+    private static final int VERSION = 2;
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+    private long baseTime = -1;
+    private int eventCount;
+
+    /**
+     * Create a new, empty trace that is ready for recording.
+     */
+    public TouchTrace() {
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+    }
+
+    /**
+     * Record a touch event at the end of the trace.
+     * @param event the event to record.
+     */
+    public void record(MotionEvent event) {
+        if (baseTime < 0) {
+            baseTime = event.getDownTime();
+        }
+
+        try {
+            final int pointerCount = event.getPointerCount();
+            out.writeShort(event.getActionMasked());
+            out.writeByte(event.getActionIndex());
+            out.writeByte(pointerCount);
+            for (int p = 0; p < pointerCount; p++) {
+                out.writeShort(event.getPointerId(p));
+            }
+            out.writeInt((int) (event.getDownTime() - baseTime));
+
+            final int historySize = event.getHistorySize();
+            out.writeShort(historySize);
+            for (int i = 0; i < historySize; i++) {
+                out.writeInt((int) (event.getHistoricalEventTime(i) - baseTime));
+                for (int p = 0; p < pointerCount; p++) {
+                    out.writeFloat(event.getHistoricalX(p, i));
+                    out.writeFloat(event.getHistoricalY(p, i));
+                }
+            }
+
+            out.writeInt((int) (event.getEventTime() - baseTime));
+            for (int p = 0; p < pointerCount; p++) {
+                out.writeFloat(event.getX(p));
+                out.writeFloat(event.getY(p));
+            }
+        } catch (IOException e) {
+            // writing to memory, this can't happen
+            throw new IllegalStateException(e);
+        }
+
+        eventCount++;
+    }
+
+    /**
+     * Get the number of events that have been recorded or read into this trace.
+     * @return the number of events.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Write the trace to a stream.
+     * @param stream the stream to write to.
+     * @throws IOException if the stream could not be written to.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        final DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeInt(eventCount);
+        header.flush();
+        bytes.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Read a trace that was previously written with {@link #writeTo(OutputStream)}.
+     * @param stream the stream to read from.
+     * @return the trace.
+     * @throws IOException if the stream could not be read or is not a touch trace.
+     */
+    public static TouchTrace readFrom(InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a touch trace");
+        }
+
+        final int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported touch trace version " + version);
+        }
+
+        final TouchTrace trace = new TouchTrace();
+        trace.eventCount = in.readInt();
+
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            trace.bytes.write(buffer, 0, read);
+        }
+
+        return trace;
+    }
+
+    /**
+     * Replay the trace into a view, keeping the original timing between events.
+     * @param target the view to dispatch the events to.
+     */
+    public void replay(final View target) {
+        final long startTime = SystemClock.uptimeMillis();
+        final DataInputStream in = openEvents();
+
+        for (int i = 0; i < eventCount; i++) {
+            final MotionEvent event = readEvent(in, startTime);
+            target.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    target.dispatchTouchEvent(event);
+                    event.recycle();
+                }
+            }, event.getEventTime() - startTime);
+        }
+    }
+
+    /**
+     * Replay the trace into a view synchronously, without waiting between events. This is
+     * useful when the events are being driven outside of a real device, for example in tests.
+     * @param target the view to dispatch the events to.
+     */
+    public void replayImmediately(View target) {
+        final long startTime = SystemClock.uptimeMillis();
+        final DataInputStream in = openEvents();
+
+        for (int i = 0; i < eventCount; i++) {
+            final MotionEvent event = readEvent(in, startTime);
+            target.dispatchTouchEvent(event);
+            event.recycle();
+        }
+    }
+
+    private DataInputStream openEvents() {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static MotionEvent readEvent(DataInputStream in, long startTime) {
+        try {
+            final int action = in.readShort() |
+                    (in.readByte() << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            final int pointerCount = in.readByte();
+            final MotionEvent.PointerProperties[] properties =
+                    new MotionEvent.PointerProperties[pointerCount];
+            final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+            for (int p = 0; p < pointerCount; p++) {
+                properties[p] = new MotionEvent.PointerProperties();
+                properties[p].id = in.readShort();
+                properties[p].toolType = MotionEvent.TOOL_TYPE_FINGER;
+
+                coords[p] = new MotionEvent.PointerCoords();
+                coords[p].pressure = 1f;
+                coords[p].size = 1f;
+            }
+            final long downTime = startTime + in.readInt();
+            final int historySize = in.readShort();
+
+            // The first historical sample (if any) becomes the base of the event and the rest
+            // of the samples are added to it as a batch.
+            MotionEvent event = null;
+            for (int i = 0; i <= historySize; i++) {
+                final long time = startTime + in.readInt();
+                for (int p = 0; p < pointerCount; p++) {
+                    coords[p].x = in.readFloat();
+                    coords[p].y = in.readFloat();
+                }
+
+                if (event == null) {
+                    event = MotionEvent.obtain(downTime, time, action, pointerCount, properties,
+                            coords, 0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+                } else {
+                    event.addBatch(time, coords, 0);
+                }
+            }
+
+            return event;
+        } catch (IOException e) {
+            throw new IllegalStateException("Touch trace is truncated", e);
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.view.MotionEvent;
+
+/**
+ * Estimates the vertical velocity of a drag from the most recent touch samples. Unlike
+ * {@link android.view.VelocityTracker}, this keeps its samples in a fixed size ring buffer of
+ * primitives, so it never needs to be obtained or recycled and can be asked for a velocity at
+ * any point during the gesture.
+ *
+ * Two strategies are available: a least squares fit of a quadratic to the samples, which is
+ * the default and what the framework uses, and an impulse based estimate which reacts faster
+ * to sudden changes in direction.
+ */
+public class VelocityEstimator {
+
+    /**
+     * Fit a second degree polynomial to the recent samples using least squares.
+     */
+    public static final int STRATEGY_LSQ2 = 0;
+
+    /**
+     * Compute the velocity from the kinetic energy imparted by each of the recent samples.
+     */
+    public static final int STRATEGY_IMPULSE = 1;
+
+    private static final int HISTORY_SIZE = 20;
+
+    /**
+     * Only samples this recent, relative to the newest one, are used for the estimate.
+     */
+    private static final long HORIZON_MS = 100;
+
+    /**
+     * A finger that holds still doesn't send any move events, so once the newest sample is this
+     * old the finger is assumed to have stopped. This is the same cutoff the framework's
+     * VelocityTracker uses.
+     */
+    private static final long ASSUME_STOPPED_MS = 40;
+
+    private final long[] times = new long[HISTORY_SIZE];
+    private final float[] positions = new float[HISTORY_SIZE];
+    private int newest = -1;
+    private int count;
+    private int strategy = STRATEGY_LSQ2;
+
+    /**
+     * Set the strategy used to compute the velocity.
+     * @param strategy either {@link #STRATEGY_LSQ2} or {@link #STRATEGY_IMPULSE}.
+     */
+    public void setStrategy(int strategy) {
+        if (strategy != STRATEGY_LSQ2 && strategy != STRATEGY_IMPULSE) {
+            throw new IllegalArgumentException("Unknown velocity strategy: " + strategy);
+        }
+
+        this.strategy = strategy;
+    }
+
+    /**
+     * Add a touch event, including its historical samples. A down event starts a new gesture
+     * and clears all of the previous samples. Like {@link android.view.VelocityTracker}, only
+     * down and move events are sampled: up and cancel events just repeat the last position, and
+     * an extra stationary sample at release would pull the velocity towards zero.
+     * @param event the touch event.
+     */
+    public void addMovement(MotionEvent event) {
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            clear();
+        } else if (action != MotionEvent.ACTION_MOVE) {
+            return;
+        }
+
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            addSample(event.getHistoricalEventTime(i), event.getHistoricalY(i));
+        }
+        addSample(event.getEventTime(), event.getY());
+    }
+
+    /**
+     * Add a single sample.
+     * @param timeMs the time of the sample, in milliseconds.
+     * @param y the vertical position of the sample.
+     */
+    public void addSample(long timeMs, float y) {
+        newest = (newest + 1) % HISTORY_SIZE;
+        times[newest] = timeMs;
+        positions[newest] = y;
+        count = Math.min(count + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * Forget all of the samples.
+     */
+    public void clear() {
+        newest = -1;
+        count = 0;
+    }
+
+    /**
+     * Get the vertical velocity at the time of the newest sample. Positive values mean that the
+     * finger is moving down the screen, which matches
+     * {@link android.view.VelocityTracker#getYVelocity()}.
+     * @param maximumVelocity the maximum velocity that should be returned, in pixels per second.
+     * @return the velocity in pixels per second.
+     */
+    public float getVelocity(float maximumVelocity) {
+        final int samples = getUsableSampleCount();
+        if (samples < 2) {
+            return 0;
+        }
+
+        final float velocity = strategy == STRATEGY_IMPULSE
+                ? computeImpulseVelocity(samples) : computeLeastSquaresVelocity(samples);
+        final float perSecond = velocity * 1000;
+        return Math.max(-maximumVelocity, Math.min(maximumVelocity, perSecond));
+    }
+
+    /**
+     * Get the vertical velocity at a point in time, ie the time of the up event that ends the
+     * gesture. If the finger hasn't moved for a while before that, it has stopped and the
+     * velocity is 0, no matter how fast it was moving before.
+     * @param timeMs the time to get the velocity at, in milliseconds.
+     * @param maximumVelocity the maximum velocity that should be returned, in pixels per second.
+     * @return the velocity in pixels per second.
+     */
+    public float getVelocity(long timeMs, float maximumVelocity) {
+        if (count == 0 || timeMs - times[newest] > ASSUME_STOPPED_MS) {
+            return 0;
+        }
+
+        return getVelocity(maximumVelocity);
+    }
+
+    private int getUsableSampleCount() {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long newestTime = times[newest];
+        int samples = 1;
+        while (samples < count
+                && newestTime - times[indexOf(samples)] <= HORIZON_MS) {
+            samples++;
+        }
+        return samples;
+    }
+
+    /**
+     * Index into the ring buffer of the sample that is {@param age} samples older than the
+     * newest one.
+     */
+    private int indexOf(int age) {
+        return (newest - age + HISTORY_SIZE) % HISTORY_SIZE;
+    }
+
+    /**
+     * Fits y = a + b * t + c * t^2 to the samples, with t relative to the newest sample. The
+     * velocity at the newest sample is then b.
+     */
+    private float computeLeastSquaresVelocity(int samples) {
+        final long newestTime = times[newest];
+        final float newestPosition = positions[newest];
+
+        // The fourth powers of the times get large quickly, so sum in double to keep the
+        // determinants from losing their precision.
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double sy = 0, sty = 0, st2y = 0;
+        for (int i = 0; i < samples; i++) {
+            final int index = indexOf(i);
+            final double t = times[index] - newestTime;
+            final double y = positions[index] - newestPosition;
+            final double t2 = t * t;
+            s0 += 1;
+            s1 += t;
+            s2 += t2;
+            s3 += t2 * t;
+            s4 += t2 * t2;
+            sy += y;
+            sty += t * y;
+            st2y += t2 * y;
+        }
+
+        if (samples > 2) {
+            // Solve the normal equations with Cramer's rule.
+            final double det = s0 * (s2 * s4 - s3 * s3)
+                    - s1 * (s1 * s4 - s3 * s2)
+                    + s2 * (s1 * s3 - s2 * s2);
+            if (det != 0) {
+                final double detB = s0 * (sty * s4 - s3 * st2y)
+                        - sy * (s1 * s4 - s3 * s2)
+                        + s2 * (s1 * st2y - sty * s2);
+                return (float) (detB / det);
+            }
+        }
+
+        // Not enough samples for a quadratic, fall back to a straight line.
+        final double det = s0 * s2 - s1 * s1;
+        return det == 0 ? 0 : (float) ((s0 * sty - s1 * sy) / det);
+    }
+
+    /**
+     * Treats each pair of samples as a push that changes the kinetic energy of the content and
+     * converts the final energy back into a velocity.
+     */
+    private float computeImpulseVelocity(int samples) {
+        float work = 0;
+        for (int i = samples - 1; i > 0; i--) {
+            final int previous = indexOf(i);
+            final int current = indexOf(i - 1);
+            final long dt = times[current] - times[previous];
+            if (dt == 0) {
+                continue;
+            }
+
+            final float previousVelocity = kineticEnergyToVelocity(work);
+            final float currentVelocity = (positions[current] - positions[previous]) / dt;
+            work += (currentVelocity - previousVelocity) * Math.abs(currentVelocity);
+            if (i == samples - 1) {
+                work *= 0.5f;
+            }
+        }
+
+        return kineticEnergyToVelocity(work);
+    }
+
+    private static float kineticEnergyToVelocity(float work) {
+        return (float) (Math.signum(work) * Math.sqrt(2 * Math.abs(work)));
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.app.Activity;
+import android.app.ActivityOptions;
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Switches a translucent activity window between opaque and translucent at runtime. While the
+ * window is opaque, the system doesn't have to keep compositing the activity underneath it.
+ *
+ * Lollipop and up have hidden methods for this, which we get to with reflection. Converting back
+ * to translucent with them reports when the activity underneath has drawn again. Android 11 has
+ * a public Activity#setTranslucent(boolean) as well, which is used if the hidden methods can't
+ * be found, but it doesn't report anything, so we wait a little instead. Anything older, or a
+ * device where neither can be used, just stays translucent.
+ */
+class WindowTranslucency {
+
+    private static final String TAG = "WindowTranslucency";
+    private static final int ANDROID_R = 30;
+
+    /**
+     * How long to wait for the activity underneath to draw when there is no way to find out.
+     */
+    private static final long UNREPORTED_CONVERSION_DELAY_MS = 100;
+
+    private static Method setTranslucent;
+    private static Method convertFromTranslucent;
+    private static Method convertToTranslucent;
+    private static Class<?> listenerClass;
+    private static boolean isInitialized;
+
+    // don't allow for instantiation
+    private WindowTranslucency() {
+
+    }
+
+    /**
+     * Check whether the window can be converted both ways on this device.
+     * @return true if it is supported.
+     */
+    static boolean isSupported() {
+        init();
+        return setTranslucent != null
+                || (convertFromTranslucent != null && convertToTranslucent != null);
+    }
+
+    /**
+     * Make the activity's window opaque.
+     * @param activity the activity, its theme has to use a translucent window.
+     * @return true if the window was converted.
+     */
+    static boolean convertToOpaque(Activity activity) {
+        init();
+        if (convertFromTranslucent != null && invoke(convertFromTranslucent, activity)) {
+            return true;
+        }
+        return setTranslucent != null && invoke(setTranslucent, activity, false);
+    }
+
+    /**
+     * Make the activity's window translucent again. The activity underneath has to draw before
+     * it shows, so nothing transparent should be put on screen until the callback has run.
+     * @param activity the activity.
+     * @param onConverted run on the main thread once the activity underneath has drawn. It is
+     *                    only run if this returns true.
+     * @return true if the window was converted.
+     */
+    static boolean convertToTranslucent(Activity activity, final Runnable onConverted) {
+        init();
+        if (convertToTranslucent != null) {
+            // The listener can be called from within the call, if there is nothing to wait for.
+            final boolean[] isCalled = new boolean[1];
+            final boolean[] isConverted = new boolean[1];
+            final Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(),
+                    new Class<?>[] { listenerClass }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("onTranslucentConversionComplete".equals(method.getName())) {
+                                isCalled[0] = true;
+                                if (isConverted[0]) {
+                                    onConverted.run();
+                                }
+                                return null;
+                            } else if ("equals".equals(method.getName())) {
+                                return proxy == args[0];
+                            } else if ("hashCode".equals(method.getName())) {
+                                return System.identityHashCode(proxy);
+                            } else if ("toString".equals(method.getName())) {
+                                return "TranslucentConversionListener";
+                            }
+                            return null;
+                        }
+                    });
+
+            if (invoke(convertToTranslucent, activity, listener, null)) {
+                isConverted[0] = true;
+                if (isCalled[0]) {
+                    onConverted.run();
+                }
+                return true;
+            }
+        }
+
+        if (setTranslucent != null && invoke(setTranslucent, activity, true)) {
+            activity.getWindow().getDecorView().postDelayed(onConverted,
+                    UNREPORTED_CONVERSION_DELAY_MS);
+            return true;
+        }
+
+        return false;
+    }
+
+    private static void init() {
+        if (isInitialized) {
+            return;
+        }
+
+        isInitialized = true;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+
+        try {
+            listenerClass = Class.forName("android.app.Activity$TranslucentConversionListener");
+            convertFromTranslucent = Activity.class.getDeclaredMethod("convertFromTranslucent");
+            convertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
+                    listenerClass, ActivityOptions.class);
+            convertFromTranslucent.setAccessible(true);
+            convertToTranslucent.setAccessible(true);
+        } catch (Exception e) {
+            listenerClass = null;
+            convertFromTranslucent = null;
+            convertToTranslucent = null;
+        }
+
+        if (Build.VERSION.SDK_INT >= ANDROID_R) {
+            try {
+                setTranslucent = Activity.class.getMethod("setTranslucent", boolean.class);
+            } catch (Exception e) {
+                setTranslucent = null;
+            }
+        }
+
+        if (!isSupported()) {
+            Log.w(TAG, "window translucency can't be changed on this device");
+        }
+    }
+
+    /**
+     * Call one of the conversion methods. Newer versions of them report whether the window was
+     * converted, older ones return nothing and always convert it.
+     * @return true if the window was converted.
+     */
+    private static boolean invoke(Method method, Activity activity, Object... args) {
+        try {
+            final Object result = method.invoke(activity, args);
+            return !(result instanceof Boolean) || (Boolean) result;
+        } catch (Exception e) {
+            Log.w(TAG, "failed to change window translucency", e);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes allocated on the main thread while the header is dragged back and forth, and
+ * fails if a steady state drag frame allocates anything at all.
+ *
+ * A frame here is a move event dispatched to the scroller, through scrollTo() and the header,
+ * tint, title and fab updates, followed by the pre-draw listeners that apply the scroll progress.
+ * Layout and drawing are left out, since those run framework code, and Robolectric's shadow
+ * canvas records every draw call as a string.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1)
+public class DragAllocationTest {
+
+    private static final int STEP = 4;
+    private static final int STEPS_PER_DIRECTION = 6;
+    private static final int WARM_UP_CYCLES = 20;
+    private static final int MEASURED_CYCLES = 20;
+
+    private ScrollFrameHarness harness;
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.release();
+        }
+    }
+
+    @Test
+    public void draggingTheHeaderDoesNotAllocate() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+
+        // Apply every move right away rather than posting it to the next frame, so that the
+        // whole path runs inside the measured loop.
+        harness.scroller.setUnbufferedDragDispatch(false);
+
+        // Close the gap, so that the drag below only moves the header.
+        final int gap = harness.activity.findViewById(R.id.transparent_view)
+                .getLayoutParams().height;
+        harness.scroller.setScroll(harness.scroller.getScroll() + gap);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+
+        // Start dragging, past the touch slop, which collapses the header a little. It can
+        // then be dragged both ways without opening the gap or collapsing all of the way.
+        final float startY = harness.getHeight() / 2;
+        harness.down(harness.getWidth() / 2, startY);
+        harness.frame();
+        final float dragY = startY - 2 * STEP * STEPS_PER_DIRECTION;
+        final MotionEvent startDrag = harness.obtainMove(dragY, SystemClock.uptimeMillis());
+        harness.scroller.dispatchTouchEvent(startDrag);
+        startDrag.recycle();
+        harness.frame();
+
+        final MotionEvent[] warmUp = buildCycles(dragY, WARM_UP_CYCLES);
+        final MotionEvent[] measured = buildCycles(dragY, MEASURED_CYCLES);
+
+        final int headerHeight = harness.scroller.getHeaderHeight();
+        dragFrames(warmUp);
+        assertEquals("the drag should end where it started",
+                headerHeight, harness.scroller.getHeaderHeight());
+
+        final long threadId = Thread.currentThread().getId();
+        final long overhead = measureOverhead(threads, threadId);
+
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        dragFrames(measured);
+        final long after = threads.getThreadAllocatedBytes(threadId);
+
+        assertTrue("the header didn't move", harness.scroller.getHeaderHeight() > 0);
+        assertEquals("bytes allocated over " + measured.length + " drag frames",
+                0, after - before - overhead);
+    }
+
+    /**
+     * Moves that drag the header up and then back down again, over and over.
+     */
+    private MotionEvent[] buildCycles(float startY, int cycles) {
+        final MotionEvent[] events = new MotionEvent[cycles * STEPS_PER_DIRECTION * 2];
+        long time = SystemClock.uptimeMillis();
+        float y = startY;
+        int index = 0;
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            for (int i = 0; i < STEPS_PER_DIRECTION; i++) {
+                y -= STEP;
+                time += ScrollFrameHarness.FRAME_MS;
+                events[index++] = harness.obtainMove(y, time);
+            }
+            for (int i = 0; i < STEPS_PER_DIRECTION; i++) {
+                y += STEP;
+                time += ScrollFrameHarness.FRAME_MS;
+                events[index++] = harness.obtainMove(y, time);
+            }
+        }
+        return events;
+    }
+
+    private void dragFrames(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            harness.scroller.dispatchTouchEvent(event);
+            harness.preDraw();
+        }
+    }
+
+    /**
+     * Reading the counter can allocate by itself, ie for the array of thread ids.
+     */
+    private static long measureOverhead(com.sun.management.ThreadMXBean threads, long threadId) {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            final long before = threads.getThreadAllocatedBytes(threadId);
+            final long after = threads.getThreadAllocatedBytes(threadId);
+            overhead = Math.min(overhead, after - before);
+        }
+        return overhead;
+    }
+
+}
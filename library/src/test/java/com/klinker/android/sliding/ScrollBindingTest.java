@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Build;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that scroll bindings follow the header on every frame, both while it is dragged and
+ * while it is animated open by tapping it, which changes its height without scrolling.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1)
+public class ScrollBindingTest {
+
+    private static final float TOLERANCE = 0.001f;
+
+    private ScrollFrameHarness harness;
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.release();
+        }
+    }
+
+    @Test
+    public void bindingsFollowTheHeaderExpanding() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+        final MultiShrinkScroller scroller = harness.scroller;
+
+        final View headerContent = harness.activity.findViewById(R.id.header_content_container);
+        scroller.addScrollBinding(new ScrollBinding(headerContent, ScrollBinding.PROPERTY_ALPHA)
+                .addKeyframe(0f, 1f)
+                .addKeyframe(1f, 0f));
+
+        // Collapse the header.
+        harness.drag(-harness.getHeight() * 0.6f, 20);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+        assertTrue("the header didn't collapse", scroller.getCollapseFraction() > 0);
+        assertBound(headerContent);
+
+        // Tap it, which animates it back open without scrolling.
+        harness.activity.findViewById(R.id.photo_touch_intercept_overlay).performClick();
+        int moving = 0;
+        int lastHeaderHeight = scroller.getHeaderHeight();
+        for (int i = 0; i < ScrollFrameHarness.SETTLE_FRAMES; i++) {
+            final ScrollFrameHarness.Frame frame = harness.frame();
+            assertBound(headerContent);
+            if (frame.headerHeight != lastHeaderHeight) {
+                moving++;
+                lastHeaderHeight = frame.headerHeight;
+            }
+        }
+        assertTrue("the header didn't animate", moving > 2);
+
+        assertEquals(0f, scroller.getCollapseFraction(), TOLERANCE);
+        assertEquals(1f, headerContent.getAlpha(), TOLERANCE);
+    }
+
+    private void assertBound(View view) {
+        assertEquals("frame " + harness.frames.size(),
+                1f - harness.scroller.getCollapseFraction(), view.getAlpha(), TOLERANCE);
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Build;
+import android.widget.ScrollView;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drags and flings the sliding screen in each of its modes and fails if a single frame costs
+ * more than its budget. Nothing else would stop a change from adding a layout pass, or a
+ * second round of listener callbacks, to every frame of scrollTo().
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1)
+public class ScrollFrameBudgetTest {
+
+    /**
+     * The gap and the header change height while scrolling, which takes one layout pass. The
+     * requests for it should all be folded into that one pass.
+     */
+    private static final int LAYOUT_BUDGET = 1;
+
+    /**
+     * Each view that changes is invalidated once per frame at most, and a frame changes the
+     * views of the card and the header. This is loose on purpose, it is here to catch
+     * invalidation loops rather than to count views.
+     */
+    private static final int INVALIDATE_BUDGET = 16;
+
+    private static final int PROGRESS_CALLBACK_BUDGET = 1;
+
+    private ScrollFrameHarness harness;
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.release();
+        }
+    }
+
+    @Test
+    public void normal() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+        dragUpAndBack("normal");
+    }
+
+    @Test
+    @Config(qualifiers = "land")
+    public void twoPanel() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+        dragUpAndBack("two panel");
+    }
+
+    @Test
+    public void noHeader() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NO_HEADER);
+        dragUpAndBack("no header");
+    }
+
+    @Test
+    public void fab() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_FAB);
+        dragUpAndBack("fab");
+    }
+
+    @Test
+    public void expandFromView() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_EXPAND_FROM_VIEW);
+        dragUpAndBack("expand from view");
+    }
+
+    @Test
+    public void scrollingTheContentDoesNotLayout() {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+
+        // Close the gap and collapse the header, so that only the content is left to scroll.
+        harness.scroller.setScroll(harness.scroller.getScroll() + harness.getHeight());
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+        harness.frames.clear();
+
+        final ScrollView content =
+                (ScrollView) harness.activity.findViewById(R.id.content_scroller);
+        final int headerHeight = harness.scroller.getHeaderHeight();
+        final int contentScroll = content.getScrollY();
+
+        harness.drag(-harness.getHeight() * 0.3f, 15);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+
+        assertTrue("the content didn't scroll", content.getScrollY() > contentScroll);
+        assertEquals(headerHeight, harness.scroller.getHeaderHeight());
+        for (ScrollFrameHarness.Frame frame : harness.frames) {
+            assertEquals("content scroll laid out: " + frame, 0, frame.layoutRequests);
+            assertEquals("content scroll measured: " + frame, 0, frame.measures);
+            assertWithinBudget("content scroll", frame);
+        }
+    }
+
+    /**
+     * Scroll up to fullscreen and let go so it flings, then pull it back down a little, not far
+     * enough to dismiss it.
+     */
+    private void dragUpAndBack(String mode) {
+        final int startScroll = harness.scroller.getScroll();
+
+        harness.drag(-harness.getHeight() * 0.6f, 20);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+        assertTrue(mode + " didn't scroll", harness.scroller.getScroll() > startScroll);
+
+        harness.drag(harness.getHeight() * 0.1f, 10);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+
+        assertWithinBudget(mode, harness.frames);
+    }
+
+    private static void assertWithinBudget(String mode, List<ScrollFrameHarness.Frame> frames) {
+        assertFalse(frames.isEmpty());
+        for (ScrollFrameHarness.Frame frame : frames) {
+            assertWithinBudget(mode, frame);
+        }
+    }
+
+    private static void assertWithinBudget(String mode, ScrollFrameHarness.Frame frame) {
+        assertTrue(mode + " requested too many layouts: " + frame,
+                frame.layoutRequests <= LAYOUT_BUDGET);
+        assertTrue(mode + " measured too often: " + frame, frame.measures <= LAYOUT_BUDGET);
+        assertTrue(mode + " laid out too often: " + frame, frame.layouts <= LAYOUT_BUDGET);
+        assertTrue(mode + " invalidated too often: " + frame,
+                frame.invalidates <= INVALIDATE_BUDGET);
+        assertTrue(mode + " dispatched scroll progress too often: " + frame,
+                frame.progressCallbacks <= PROGRESS_CALLBACK_BUDGET);
+        assertEquals(mode + " laid out the title while scrolling: " + frame,
+                0, frame.titleLayouts);
+    }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link TestSlidingActivity} one frame at a time under Robolectric and counts what each
+ * frame costs: layout requests, measure and layout passes, invalidations, scroll progress
+ * callbacks and layouts of the title.
+ *
+ * The main looper is paused once the activity is visible, so nothing happens between calls to
+ * {@link #frame()}. Each frame lets {@link #FRAME_MS} pass, which runs the animators and
+ * anything that was posted, and then does what ViewRootImpl does: a layout pass if one was
+ * requested, the pre-draw listeners and a software draw, which is where flings advance.
+ */
+class ScrollFrameHarness {
+
+    static final long FRAME_MS = 16;
+
+    /**
+     * Enough frames for any of the scroller's animations or flings to finish.
+     */
+    static final int SETTLE_FRAMES = 90;
+
+    final ActivityController<TestSlidingActivity> controller;
+    final TestSlidingActivity activity;
+    final MultiShrinkScroller scroller;
+    final FrameCounter counter;
+
+    /**
+     * The counts for every frame since this was last cleared.
+     */
+    final List<Frame> frames = new ArrayList<Frame>();
+
+    private final View decor;
+    private final int width;
+    private final int height;
+    private final Canvas canvas;
+    private int progressCallbacks;
+    private int titleLayouts;
+    private long downTime;
+    private float touchX;
+    private float touchY;
+
+    ScrollFrameHarness(int mode) {
+        final Intent intent = new Intent(RuntimeEnvironment.application, TestSlidingActivity.class)
+                .putExtra(TestSlidingActivity.EXTRA_MODE, mode);
+        controller = Robolectric.buildActivity(TestSlidingActivity.class, intent);
+        activity = controller.get();
+        activity.setTheme(R.style.Theme_Sliding_Light);
+        controller.create();
+
+        // Put the counting parent between the window and the scroller before anything has
+        // been attached, so that every layout request and invalidation passes through it.
+        scroller = (MultiShrinkScroller) activity.findViewById(R.id.multiscroller);
+        final ViewGroup content = (ViewGroup) activity.findViewById(android.R.id.content);
+        content.removeView(scroller);
+        counter = new FrameCounter(activity);
+        counter.addView(scroller, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        content.addView(counter, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        controller.start().postCreate(null).resume().visible();
+
+        decor = activity.getWindow().getDecorView();
+        width = decor.getWidth() > 0 ? decor.getWidth() :
+                activity.getResources().getDisplayMetrics().widthPixels;
+        height = decor.getHeight() > 0 ? decor.getHeight() :
+                activity.getResources().getDisplayMetrics().heightPixels;
+        canvas = new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+
+        scroller.addOnScrollProgressListener(new MultiShrinkScroller.OnScrollProgressListener() {
+            @Override
+            public void onScrollProgress(float collapseFraction, float gapFraction,
+                                         boolean isFlinging, float velocity) {
+                progressCallbacks++;
+            }
+        });
+        activity.findViewById(R.id.large_title).addOnLayoutChangeListener(
+                new View.OnLayoutChangeListener() {
+                    @Override
+                    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                               int oldLeft, int oldTop, int oldRight,
+                                               int oldBottom) {
+                        titleLayouts++;
+                    }
+                });
+
+        // Animator frames are posted a frame apart, rather than all running at once.
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setPostFrameCallbackDelay((int) FRAME_MS);
+
+        runFrames(SETTLE_FRAMES);
+        frames.clear();
+    }
+
+    /**
+     * Put Robolectric back the way it was.
+     */
+    void release() {
+        ShadowChoreographer.setPostFrameCallbackDelay(0);
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Run a single frame and record what it cost.
+     * @return the counts for the frame.
+     */
+    Frame frame() {
+        counter.reset();
+        progressCallbacks = 0;
+        titleLayouts = 0;
+
+        ShadowLooper.idleMainLooper(FRAME_MS, TimeUnit.MILLISECONDS);
+        traverse();
+
+        final Frame frame = new Frame(frames.size(), counter, progressCallbacks, titleLayouts,
+                scroller.getScroll(), scroller.getHeaderHeight());
+        frames.add(frame);
+        return frame;
+    }
+
+    void runFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            frame();
+        }
+    }
+
+    /**
+     * Drag the content by a distance, spread evenly over a number of frames, and let go. Letting
+     * go while the finger is still moving starts a fling.
+     * @param distance the distance to drag the finger, negative to drag upwards.
+     * @param frameCount the number of frames to spread the drag over.
+     */
+    void drag(float distance, int frameCount) {
+        down(width / 2, distance < 0 ? height * 3 / 4 : height / 4);
+        frame();
+
+        final float step = distance / frameCount;
+        for (int i = 0; i < frameCount; i++) {
+            touchY += step;
+            dispatch(MotionEvent.ACTION_MOVE);
+            frame();
+        }
+
+        dispatch(MotionEvent.ACTION_UP);
+        frame();
+    }
+
+    void down(float x, float y) {
+        downTime = SystemClock.uptimeMillis();
+        touchX = x;
+        touchY = y;
+        dispatch(MotionEvent.ACTION_DOWN);
+    }
+
+    /**
+     * Build the event for the finger of the current gesture moving to a position, so that it
+     * can be dispatched later on.
+     * @param y the vertical position of the finger.
+     * @param eventTime the time of the event.
+     */
+    MotionEvent obtainMove(float y, long eventTime) {
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime,
+                MotionEvent.ACTION_MOVE, touchX, y, 0);
+        event.setSource(InputDevice.SOURCE_TOUCHSCREEN);
+        return event;
+    }
+
+    /**
+     * Run the pre-draw listeners, without laying out or drawing.
+     */
+    void preDraw() {
+        decor.getViewTreeObserver().dispatchOnPreDraw();
+    }
+
+    private void dispatch(int action) {
+        final MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(),
+                action, touchX, touchY, 0);
+        event.setSource(InputDevice.SOURCE_TOUCHSCREEN);
+        scroller.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Lay out, run the pre-draw listeners and draw, at the size the window already has.
+     * Robolectric's own traversals may have done some of this while idling, in which case the
+     * flags are already clear and this does nothing more.
+     */
+    private void traverse() {
+        if (decor.isLayoutRequested()) {
+            decor.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+            decor.layout(0, 0, width, height);
+        }
+
+        final boolean cancelDraw = decor.getViewTreeObserver().dispatchOnPreDraw();
+        if (!cancelDraw) {
+            decor.draw(canvas);
+        }
+    }
+
+    /**
+     * What a single frame cost.
+     */
+    static class Frame {
+
+        final int index;
+        final int layoutRequests;
+        final int measures;
+        final int layouts;
+        final int invalidates;
+        final int progressCallbacks;
+        final int titleLayouts;
+        final int scroll;
+        final int headerHeight;
+
+        Frame(int index, FrameCounter counter, int progressCallbacks, int titleLayouts,
+              int scroll, int headerHeight) {
+            this.index = index;
+            this.layoutRequests = counter.layoutRequests;
+            this.measures = counter.measures;
+            this.layouts = counter.layouts;
+            this.invalidates = counter.invalidates;
+            this.progressCallbacks = progressCallbacks;
+            this.titleLayouts = titleLayouts;
+            this.scroll = scroll;
+            this.headerHeight = headerHeight;
+        }
+
+        @Override
+        public String toString() {
+            return "Frame{index=" + index +
+                    ", layoutRequests=" + layoutRequests +
+                    ", measures=" + measures +
+                    ", layouts=" + layouts +
+                    ", invalidates=" + invalidates +
+                    ", progressCallbacks=" + progressCallbacks +
+                    ", titleLayouts=" + titleLayouts +
+                    ", scroll=" + scroll +
+                    ", headerHeight=" + headerHeight + "}";
+        }
+    }
+
+    /**
+     * The parent of the scroller. A layout request only travels up to it when nothing below it
+     * has asked for a layout yet, so its requests are the layout passes the scroller needs.
+     */
+    static class FrameCounter extends FrameLayout {
+
+        int layoutRequests;
+        int measures;
+        int layouts;
+        int invalidates;
+
+        FrameCounter(Context context) {
+            super(context);
+        }
+
+        void reset() {
+            layoutRequests = 0;
+            measures = 0;
+            layouts = 0;
+            invalidates = 0;
+        }
+
+        @Override
+        public void requestLayout() {
+            if (!isLayoutRequested()) {
+                layoutRequests++;
+            }
+            super.requestLayout();
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measures++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            layouts++;
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+        @Override
+        public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+            // Software rendering, which is what Robolectric uses.
+            invalidates++;
+            return super.invalidateChildInParent(location, dirty);
+        }
+
+        @Override
+        public void onDescendantInvalidated(View child, View target) {
+            // Hardware rendering.
+            invalidates++;
+            super.onDescendantInvalidated(child, target);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * A bare sliding activity for the tests, set up the same way an app would in init(). Which
+ * features are turned on comes from the intent, see the MODE_ constants.
+ */
+public class TestSlidingActivity extends SlidingActivity {
+
+    public static final String EXTRA_MODE = "mode";
+
+    public static final int MODE_NORMAL = 0;
+    public static final int MODE_NO_HEADER = 1;
+    public static final int MODE_FAB = 2;
+    public static final int MODE_EXPAND_FROM_VIEW = 3;
+
+    /**
+     * Tall enough that the content always has to scroll once the header is collapsed.
+     */
+    public static final int CONTENT_HEIGHT = 4000;
+
+    @Override
+    public void init(Bundle savedInstanceState) {
+        setTitle("Sliding Activity");
+        setPrimaryColors(0xff607D8B, 0xff37474F);
+
+        final View content = new View(this);
+        content.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, CONTENT_HEIGHT));
+        setContent(content);
+
+        switch (getIntent().getIntExtra(EXTRA_MODE, MODE_NORMAL)) {
+            case MODE_NO_HEADER:
+                disableHeader();
+                break;
+            case MODE_FAB:
+                setFab(0xffFF5722, android.R.drawable.ic_input_add, null);
+                break;
+            case MODE_EXPAND_FROM_VIEW:
+                expandFromPoints(0, 200, 300, 150);
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Records a drag, writes the trace out and reads it back in, and replays it into a fresh
+ * activity, which should end up exactly where the recorded one did.
+ *
+ * The replay dispatches the whole gesture at once, so the moves are only applied when the finger
+ * lifts. From there on the fling is the same as the recorded one, frame for frame.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1)
+public class TouchTraceTest {
+
+    private static final int DRAG_FRAMES = 20;
+
+    private ScrollFrameHarness harness;
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.release();
+        }
+    }
+
+    @Test
+    public void replayMatchesTheRecordedDrag() throws IOException {
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+        final TouchTrace recorded = new TouchTrace();
+        harness.scroller.setTouchTrace(recorded);
+        harness.drag(-harness.getHeight() * 0.6f, DRAG_FRAMES);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES);
+        harness.scroller.setTouchTrace(null);
+
+        final int recordedScroll = harness.scroller.getScroll();
+        final List<ScrollFrameHarness.Frame> recordedFrames = harness.frames;
+        harness.release();
+
+        // The down, every move and the up.
+        assertEquals(DRAG_FRAMES + 2, recorded.getEventCount());
+        final TouchTrace trace = TouchTrace.readFrom(new ByteArrayInputStream(write(recorded)));
+        assertEquals(recorded.getEventCount(), trace.getEventCount());
+
+        harness = new ScrollFrameHarness(TestSlidingActivity.MODE_NORMAL);
+        assertNotEquals("the drag should have scrolled", recordedScroll,
+                harness.scroller.getScroll());
+
+        final TouchTrace replayed = new TouchTrace();
+        harness.scroller.setTouchTrace(replayed);
+        trace.replayImmediately(harness.scroller);
+        harness.runFrames(ScrollFrameHarness.SETTLE_FRAMES + 1);
+
+        assertEquals(recorded.getEventCount(), replayed.getEventCount());
+        assertEquals(recordedScroll, harness.scroller.getScroll());
+
+        // Line the frame the finger lifted in up with the first frame of the replay.
+        final int lift = DRAG_FRAMES + 1;
+        for (int i = 0; i < harness.frames.size(); i++) {
+            final ScrollFrameHarness.Frame expected = recordedFrames.get(lift + i);
+            final ScrollFrameHarness.Frame actual = harness.frames.get(i);
+            assertEquals(expected + " vs " + actual, expected.layouts, actual.layouts);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readingTheWrongMagicFails() throws IOException {
+        final byte[] bytes = write(new TouchTrace());
+        bytes[0] ^= 0xFF;
+        TouchTrace.readFrom(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void readingAnUnknownVersionFails() throws IOException {
+        final byte[] bytes = write(new TouchTrace());
+        // The version comes right after the magic number.
+        bytes[4]++;
+        TouchTrace.readFrom(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] write(TouchTrace trace) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        trace.writeTo(stream);
+        return stream.toByteArray();
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 Jacob Klinker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.klinker.android.sliding;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Feeds timed samples straight into the estimator, so this doesn't need Android at all.
+ */
+public class VelocityEstimatorTest {
+
+    private static final float MAXIMUM_VELOCITY = 8000;
+    private static final float TOLERANCE = 1;
+
+    /**
+     * 10 px every 8 ms.
+     */
+    private static final float DRAG_VELOCITY = 1250;
+
+    private VelocityEstimator estimator;
+
+    @Before
+    public void setUp() {
+        estimator = new VelocityEstimator();
+    }
+
+    @Test
+    public void steadyDrag() {
+        final long end = drag(0, 10);
+        assertEquals(DRAG_VELOCITY, estimator.getVelocity(MAXIMUM_VELOCITY), TOLERANCE);
+        assertEquals(DRAG_VELOCITY, estimator.getVelocity(end + 8, MAXIMUM_VELOCITY), TOLERANCE);
+    }
+
+    @Test
+    public void steadyDragWithImpulseStrategy() {
+        estimator.setStrategy(VelocityEstimator.STRATEGY_IMPULSE);
+        final long end = drag(0, 10);
+        assertEquals(DRAG_VELOCITY, estimator.getVelocity(end + 8, MAXIMUM_VELOCITY), TOLERANCE);
+    }
+
+    @Test
+    public void dragPauseAndLiftHasNoVelocity() {
+        final long end = drag(0, 10);
+
+        // A finger that holds still sends no move events, so the newest sample is the last one
+        // of the drag when the finger is finally lifted.
+        final long lift = end + 200;
+        assertEquals(0, estimator.getVelocity(lift, MAXIMUM_VELOCITY), 0);
+    }
+
+    @Test
+    public void liftRightAfterTheCutoff() {
+        final long end = drag(0, 10);
+        assertEquals(DRAG_VELOCITY, estimator.getVelocity(end + 40, MAXIMUM_VELOCITY), TOLERANCE);
+        assertEquals(0, estimator.getVelocity(end + 41, MAXIMUM_VELOCITY), 0);
+    }
+
+    @Test
+    public void velocityIsClamped() {
+        final long end = drag(0, 1000);
+        assertEquals(MAXIMUM_VELOCITY, estimator.getVelocity(end, MAXIMUM_VELOCITY), 0);
+    }
+
+    @Test
+    public void clearForgetsTheDrag() {
+        final long end = drag(0, 10);
+        estimator.clear();
+        assertEquals(0, estimator.getVelocity(end, MAXIMUM_VELOCITY), 0);
+    }
+
+    /**
+     * Drag down the screen with a sample every 8 ms.
+     * @return the time of the last sample.
+     */
+    private long drag(long start, float step) {
+        long time = start;
+        float y = 0;
+        for (int i = 0; i < 10; i++) {
+            estimator.addSample(time, y);
+            time += 8;
+            y += step;
+        }
+        return time - 8;
+    }
+
+}
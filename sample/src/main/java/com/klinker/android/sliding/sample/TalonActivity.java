@@ -21,7 +21,6 @@ import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Debug;
-import android.os.Handler;
 import android.view.Menu;
 import android.view.View;
 
@@ -36,6 +35,13 @@ import com.klinker.android.sliding.SlidingActivity;
  */
 public class TalonActivity extends SlidingActivity {
 
+    private final Runnable setProfileImage = new Runnable() {
+        @Override
+        public void run() {
+            setImage(R.drawable.twitter_profile);
+        }
+    };
+
     /**
      * Initialize our values, this is overridden instead of onCreate as it should be in all
      * sliding activities.
@@ -62,13 +68,9 @@ public class TalonActivity extends SlidingActivity {
             }).applyTo(this, findViewById(R.id.talon_stats_card));
         }
 
-        // delay this so that the animation shows and we don't change the activity colors
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                setImage(R.drawable.twitter_profile);
-            }
-        }, 500);
+        // delay this so that the animation shows and we don't change the activity colors. Post
+        // it to a view so that it can be removed if the activity is dismissed before it runs.
+        getWindow().getDecorView().postDelayed(setProfileImage, 500);
 
         setFab(
                 getResources().getColor(R.color.talon_activity_accent),
@@ -87,6 +89,14 @@ public class TalonActivity extends SlidingActivity {
         }
     }
 
+    /**
+     * Don't set the image anymore if the activity is already being dismissed.
+     */
+    @Override
+    protected void onDismissCommitted() {
+        getWindow().getDecorView().removeCallbacks(setProfileImage);
+    }
+
     /**
      * Creates the options menu.
      * @param menu the menu.